@@ -1,19 +1,46 @@
 package org.schemarepo.validation;
 
 import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
 import org.apache.avro.SchemaParseException;
 import org.schemarepo.SchemaValidationException;
 import org.apache.avro.io.parsing.ResolvingGrammarGenerator;
 import org.apache.avro.io.parsing.Symbol;
-import org.schemarepo.api.converter.AvroSchemaConverter;
+import org.schemarepo.config.Config;
 
+import javax.inject.Inject;
 import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * Implements a {@link CanReadValidationStrategy} for Avro {@link Schema} type.
+ * The schemas are parsed through an {@link AvroSchemaCache}, shared by all the
+ * instances created by the same injector.
  */
-public class AvroCanReadValidationStrategy extends CanReadValidationStrategy {
-    private final AvroSchemaConverter converter = new AvroSchemaConverter();
+public class AvroCanReadValidationStrategy extends CanReadValidationStrategy implements SchemaEquivalence {
+    private final AvroSchemaCache schemaCache;
+
+    public AvroCanReadValidationStrategy() {
+        this(new AvroSchemaCache(Config.getIntDefault(Config.AVRO_PARSED_SCHEMA_CACHE_MAX_ENTRIES)));
+    }
+
+    /**
+     * @param schemaCache
+     *          The cache of the parsed schemas.
+     */
+    @Inject
+    public AvroCanReadValidationStrategy(AvroSchemaCache schemaCache) {
+        this.schemaCache = schemaCache;
+    }
+
+    /**
+     * @return the cache of the parsed schemas, and its hit rate
+     */
+    public AvroSchemaCache getSchemaCache() {
+        return schemaCache;
+    }
 
     @Override
     protected void canRead(String writtenWithString, String readUsingString) throws SchemaValidationException {
@@ -21,7 +48,7 @@ public class AvroCanReadValidationStrategy extends CanReadValidationStrategy {
         Schema writtenWith;
         Schema readUsing;
         try {
-            writtenWith = converter.fromString(writtenWithString);
+            writtenWith = schemaCache.get(writtenWithString);
         }
         catch (SchemaParseException spe) {
             throw new SchemaValidationException("Could not parse writer schema. "
@@ -29,7 +56,7 @@ public class AvroCanReadValidationStrategy extends CanReadValidationStrategy {
                     + "\nWriter Schema:\n" + writtenWithString);
         }
         try {
-            readUsing = converter.fromString(readUsingString);
+            readUsing = schemaCache.get(readUsingString);
         }
         catch (SchemaParseException spe) {
             throw new SchemaValidationException("Could not parse reader schema. "
@@ -47,6 +74,76 @@ public class AvroCanReadValidationStrategy extends CanReadValidationStrategy {
         }
     }
 
+    /**
+     * Schemas are resolved the same way if they have the same Parsing Canonical
+     * Form, which keeps all that resolution depends on but the default values of
+     * the fields, and the same default values. The key also keeps the aliases,
+     * which readers other than this strategy resolve schemas with. The key is
+     * kept along with the parsed schema, so it is computed once per schema
+     * cached.
+     */
+    @Override
+    public String equivalenceKey(String schema) {
+        AvroSchemaCache.Parsed parsed;
+        try {
+            parsed = schemaCache.parse(schema);
+        } catch (SchemaParseException spe) {
+            return null;
+        }
+        String key = parsed.equivalenceKey;
+        if (key == null) {
+            StringBuilder builder = new StringBuilder(SchemaNormalization.toParsingForm(parsed.schema));
+            appendDefaultsAndAliases(parsed.schema, builder, new HashSet<String>());
+            key = builder.toString();
+            parsed.equivalenceKey = key;
+        }
+        return key;
+    }
+
+    private static void appendDefaultsAndAliases(Schema schema, StringBuilder key, Set<String> visited) {
+        switch (schema.getType()) {
+        case RECORD:
+            if (!visited.add(schema.getFullName())) {
+                return;
+            }
+            appendAliases(schema.getFullName(), schema.getAliases(), key);
+            for (Schema.Field field : schema.getFields()) {
+                if (field.defaultValue() != null) {
+                    key.append('\n').append(schema.getFullName()).append('.').append(field.name())
+                            .append('=').append(field.defaultValue());
+                }
+                appendAliases(schema.getFullName() + '.' + field.name(), field.aliases(), key);
+                appendDefaultsAndAliases(field.schema(), key, visited);
+            }
+            break;
+        case ENUM:
+        case FIXED:
+            if (visited.add(schema.getFullName())) {
+                appendAliases(schema.getFullName(), schema.getAliases(), key);
+            }
+            break;
+        case ARRAY:
+            appendDefaultsAndAliases(schema.getElementType(), key, visited);
+            break;
+        case MAP:
+            appendDefaultsAndAliases(schema.getValueType(), key, visited);
+            break;
+        case UNION:
+            for (Schema type : schema.getTypes()) {
+                appendDefaultsAndAliases(type, key, visited);
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    private static void appendAliases(String name, Set<String> aliases, StringBuilder key) {
+        if (!aliases.isEmpty()) {
+            key.append('\n').append(name).append(" aka ").append(new TreeSet<String>(aliases));
+        }
+    }
+
     private static String getMessage(Schema reader, Schema writer) {
         return "Unable to read schema: \n"
                 + writer.toString(true) + "\nusing schema:\n" + reader.toString(true);
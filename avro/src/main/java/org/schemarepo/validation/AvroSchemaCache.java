@@ -0,0 +1,153 @@
+package org.schemarepo.validation;
+
+import org.apache.avro.Schema;
+import org.schemarepo.SchemaFingerprint;
+import org.schemarepo.api.converter.AvroSchemaConverter;
+import org.schemarepo.config.Config;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * A bounded cache of parsed Avro {@link Schema} instances, keyed by the
+ * {@link SchemaFingerprint} of their literal.
+ * </p>
+ * <p>
+ * Parsing a schema is much more expensive than fingerprinting it, and the same
+ * schemas are parsed over and over when validating a new version against the
+ * history of a subject. The literal of a cached schema is compared with the
+ * one sought before the schema is returned. The least recently used schemas
+ * are evicted once the maximum number of schemas is reached. The schemas are
+ * shared by all the lookups, and Avro schemas can be modified (e.g. through
+ * {@link Schema#addProp(String, String)}), so they are only handed to the
+ * validation strategies of this package, which do not modify them. Thread-safe.
+ * </p>
+ */
+@Singleton
+public class AvroSchemaCache {
+    private final AvroSchemaConverter converter = new AvroSchemaConverter(false);
+    // guarded by itself
+    private final LinkedHashMap<SchemaFingerprint, Parsed> schemas;
+    // guarded by schemas
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxEntries
+     *          The maximum number of schemas to cache.
+     */
+    @Inject
+    public AvroSchemaCache(@Named(Config.AVRO_PARSED_SCHEMA_CACHE_MAX_ENTRIES) final Integer maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The size of the cache must be positive");
+        }
+        this.schemas = new LinkedHashMap<SchemaFingerprint, Parsed>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<SchemaFingerprint, Parsed> eldest) {
+                if (size() > maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the parsed schema of the given literal, parsed if it is not
+     *         cached yet
+     * @throws org.apache.avro.SchemaParseException
+     *           if the literal could not be parsed, which is not cached
+     */
+    Schema get(String literal) {
+        return parse(literal).schema;
+    }
+
+    /**
+     * @return the cached entry of the given literal, parsed if it is not
+     *         cached yet
+     * @throws org.apache.avro.SchemaParseException
+     *           if the literal could not be parsed, which is not cached
+     */
+    Parsed parse(String literal) {
+        SchemaFingerprint fingerprint = SchemaFingerprint.of(literal);
+        Parsed cached;
+        synchronized (schemas) {
+            cached = schemas.get(fingerprint);
+            if (cached != null && cached.literal.equals(literal)) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        // parsed out of the lock, so a schema may be parsed twice concurrently
+        Parsed parsed = new Parsed(literal, converter.fromString(literal));
+        if (cached == null) {
+            // a literal colliding with a cached one is not cached
+            synchronized (schemas) {
+                if (!schemas.containsKey(fingerprint)) {
+                    schemas.put(fingerprint, parsed);
+                }
+            }
+        }
+        return parsed;
+    }
+
+    /** @return the number of schemas cached */
+    public int size() {
+        synchronized (schemas) {
+            return schemas.size();
+        }
+    }
+
+    /** @return the number of lookups answered from the cache */
+    public long getHits() {
+        synchronized (schemas) {
+            return hits;
+        }
+    }
+
+    /** @return the number of lookups which had to parse the schema */
+    public long getMisses() {
+        synchronized (schemas) {
+            return misses;
+        }
+    }
+
+    /** @return the share of the lookups answered from the cache, 0 if none */
+    public double getHitRate() {
+        synchronized (schemas) {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    /** @return the number of schemas evicted so far */
+    public long getEvictions() {
+        synchronized (schemas) {
+            return evictions;
+        }
+    }
+
+    /**
+     * A parsed schema, along with what the strategies derive from it.
+     */
+    static final class Parsed {
+        private final String literal;
+        final Schema schema;
+        // set by the strategy on first use
+        volatile String equivalenceKey;
+
+        private Parsed(String literal, Schema schema) {
+            this.literal = literal;
+            this.schema = schema;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.schemarepo.validation;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.schemarepo.SchemaValidationException;
+
+public class TestAvroCanReadValidationStrategy {
+
+    private static final String USER = "{\"type\":\"record\",\"name\":\"User\",\"fields\":["
+            + "{\"name\":\"name\",\"type\":\"string\"}]}";
+
+    private static final String USER_DOCUMENTED = "{\n  \"type\" : \"record\",\n  \"name\" : \"User\",\n"
+            + "  \"doc\" : \"A user\",\n  \"fields\" : [ {\n    \"name\" : \"name\",\n"
+            + "    \"type\" : \"string\",\n    \"doc\" : \"The name of the user\"\n  } ]\n}";
+
+    private static final String USER_ALIASED = "{\"type\":\"record\",\"name\":\"User\",\"aliases\":[\"Person\"],"
+            + "\"fields\":[{\"name\":\"name\",\"type\":\"string\"}]}";
+
+    private static final String USER_FIELD_ALIASED = "{\"type\":\"record\",\"name\":\"User\",\"fields\":["
+            + "{\"name\":\"name\",\"type\":\"string\",\"aliases\":[\"login\"]}]}";
+
+    private static final String USER_WITH_AGE = "{\"type\":\"record\",\"name\":\"User\",\"fields\":["
+            + "{\"name\":\"name\",\"type\":\"string\"},{\"name\":\"age\",\"type\":\"int\"}]}";
+
+    private static String userWithAge(int defaultAge) {
+        return "{\"type\":\"record\",\"name\":\"User\",\"fields\":["
+                + "{\"name\":\"name\",\"type\":\"string\"},"
+                + "{\"name\":\"age\",\"type\":\"int\",\"default\":" + defaultAge + "}]}";
+    }
+
+    private final AvroCanReadValidationStrategy strategy = new AvroCanReadValidationStrategy(new AvroSchemaCache(10));
+
+    @Test
+    public void testDocsAndFormattingIgnored() {
+        Assert.assertEquals(strategy.equivalenceKey(USER), strategy.equivalenceKey(USER_DOCUMENTED));
+    }
+
+    @Test
+    public void testDefaultsKept() throws SchemaValidationException {
+        Assert.assertFalse(strategy.equivalenceKey(userWithAge(0)).equals(strategy.equivalenceKey(userWithAge(1))));
+        Assert.assertFalse(strategy.equivalenceKey(userWithAge(0)).equals(strategy.equivalenceKey(USER_WITH_AGE)));
+        // a default is what lets a reader read data written without the field
+        strategy.validate(userWithAge(0), USER);
+        try {
+            strategy.validate(USER_WITH_AGE, USER);
+            Assert.fail("the schema was validated");
+        } catch (SchemaValidationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testAliasesKept() {
+        Assert.assertFalse(strategy.equivalenceKey(USER).equals(strategy.equivalenceKey(USER_ALIASED)));
+        Assert.assertFalse(strategy.equivalenceKey(USER).equals(strategy.equivalenceKey(USER_FIELD_ALIASED)));
+        Assert.assertFalse(strategy.equivalenceKey(USER_ALIASED).equals(strategy.equivalenceKey(USER_FIELD_ALIASED)));
+    }
+
+    @Test
+    public void testKeyComputedOncePerSchema() {
+        String key = strategy.equivalenceKey(USER);
+        Assert.assertSame(key, strategy.equivalenceKey(new String(USER)));
+        Assert.assertNull(strategy.equivalenceKey("not a schema"));
+    }
+}
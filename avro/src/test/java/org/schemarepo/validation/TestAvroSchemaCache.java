@@ -0,0 +1,67 @@
+package org.schemarepo.validation;
+
+import org.apache.avro.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+import org.schemarepo.SchemaFingerprint;
+
+public class TestAvroSchemaCache {
+
+    private static String record(String name) {
+        return record(name, "");
+    }
+
+    /**
+     * @param whitespace
+     *          The whitespace following the schema, a tab for each '1' and a
+     *          space for each '0'.
+     */
+    private static String record(String name, String whitespace) {
+        return "{\"type\":\"record\",\"name\":\"" + name + "\",\"fields\":[]}"
+                + whitespace.replace('1', '\t').replace('0', ' ');
+    }
+
+    @Test
+    public void testHit() {
+        AvroSchemaCache cache = new AvroSchemaCache(10);
+        Schema parsed = cache.get(record("R"));
+        Assert.assertSame(parsed, cache.get(new String(record("R"))));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(0.5, cache.getHitRate(), 0);
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testCollidingLiteralNotMistakenForTheCachedOne() {
+        // the whitespace makes their fingerprints collide
+        String cached = record("R", "000000000000000000000000000000000000000000000000"
+                + "000000000000000000000000000000000000000000000000");
+        String colliding = record("S", "101011110001100001010000111101001100110101000000"
+                + "011110110101011100000000000000000000000000000000");
+        Assert.assertEquals(SchemaFingerprint.of(cached), SchemaFingerprint.of(colliding));
+
+        AvroSchemaCache cache = new AvroSchemaCache(10);
+        Schema parsed = cache.get(cached);
+        Assert.assertEquals("S", cache.get(colliding).getName());
+        Assert.assertEquals("S", cache.get(colliding).getName());
+        Assert.assertSame(parsed, cache.get(cached));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() {
+        AvroSchemaCache cache = new AvroSchemaCache(2);
+        Schema r0 = cache.get(record("R0"));
+        Schema r1 = cache.get(record("R1"));
+        cache.get(record("R0"));
+        Schema r2 = cache.get(record("R2"));
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(1, cache.getEvictions());
+        // the one just cached is kept, along with the one used last
+        Assert.assertSame(r2, cache.get(record("R2")));
+        Assert.assertSame(r0, cache.get(record("R0")));
+        Assert.assertNotSame(r1, cache.get(record("R1")));
+    }
+}
@@ -72,6 +72,8 @@ public class RESTRepositoryClient extends BaseRepository implements RepositoryCl
 
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
+  private Client client;
+  private Client auxClient;
   private WebResource webResource;
   private WebResource auxWebResource;
   private JsonUtil jsonUtil;
@@ -85,9 +87,11 @@ public class RESTRepositoryClient extends BaseRepository implements RepositoryCl
     logger.info(format("Pointing to schema-repo server at %s", url));
     logger.info(format("Remote exceptions from GET requests will be %s",
             returnNoneOnExceptions ? "swallowed and an 'empty' value returned" : "propagated to the caller"));
-    this.webResource = Client.create().resource(url);
+    this.client = Client.create();
+    this.auxClient = Client.create();
+    this.webResource = client.resource(url);
     try {
-      this.auxWebResource = Client.create().resource(new URI(url + "/..").normalize());
+      this.auxWebResource = auxClient.resource(new URI(url + "/..").normalize());
     } catch (URISyntaxException e) {
       throw new RuntimeException("Invalid url: " + url, e);
     }
@@ -160,6 +164,13 @@ public class RESTRepositoryClient extends BaseRepository implements RepositoryCl
     return properties;
   }
 
+  @Override
+  public void close() throws IOException {
+    client.destroy();
+    auxClient.destroy();
+    super.close();
+  }
+
   private class RESTSubject extends Subject {
 
     private RESTSubject(String name) {
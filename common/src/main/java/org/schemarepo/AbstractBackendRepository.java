@@ -26,6 +26,8 @@ public abstract class AbstractBackendRepository extends BaseRepository {
 
   protected final InMemorySubjectCache subjectCache = new InMemorySubjectCache();
   protected final ValidatorFactory validators;
+  // interns the schemas held by the subjects, so that they share them
+  protected final SchemaInterner schemaInterner = new SchemaInterner();
 
   protected AbstractBackendRepository(final ValidatorFactory validators) {
     this.validators = validators != null ? validators : ValidatorFactory.EMPTY;
@@ -41,7 +43,7 @@ public abstract class AbstractBackendRepository extends BaseRepository {
   protected abstract Subject getSubjectInstance(final String subjectName);
 
   /**
-   * Creates, applies validation decorator, and caches subject.
+   * Creates, applies validation and canonicalization decorators, and caches subject.
    * @param subjectName subject name
    * @return Subject the newly created instance or possibly pre-existing cached instance
    */
@@ -50,12 +52,38 @@ public abstract class AbstractBackendRepository extends BaseRepository {
   }
 
   /**
-   * Applies validation decorator, and caches subject.
+   * Applies validation and canonicalization decorators, and caches subject.
    * @param subject subject to cache
    * @return Subject the passed instance or possibly pre-existing cached instance
    */
   protected final Subject cacheSubject(final Subject subject) {
-    return subjectCache.add(Subject.validatingSubject(subject, validators));
+    Subject decorated = Subject.canonicalizingSubject(Subject.validatingSubject(subject, validators), validators);
+    Subject cached = subjectCache.add(decorated);
+    if (subject != null) {
+      if (cached == decorated) {
+        subjectInstanceCached(subject);
+      } else {
+        subjectInstanceDiscarded(subject);
+      }
+    }
+    return cached;
+  }
+
+  /**
+   * Called by {@link #cacheSubject(Subject)} once the given instance is the one
+   * cached for its subject. Does nothing by default.
+   * @param subject the undecorated instance
+   */
+  protected void subjectInstanceCached(final Subject subject) {
+  }
+
+  /**
+   * Called by {@link #cacheSubject(Subject)} when another instance of the same
+   * subject was cached first, so that the given one is discarded and may
+   * release what it holds. Does nothing by default.
+   * @param subject the undecorated instance
+   */
+  protected void subjectInstanceDiscarded(final Subject subject) {
   }
 
   @Override
@@ -44,6 +44,15 @@ public abstract class BaseRepository implements Repository {
     }
   }
 
+  /**
+   * Asserts the repository is ready to serve traffic, for ex. it has finished loading its state.
+   * A repository may be valid but not yet ready while it warms up. By default, this is the same as {@link #isValid()}.
+   * @throws java.lang.IllegalStateException if the repository is NOT ready
+   */
+  public void isReady() {
+    isValid();
+  }
+
   @Override
   public void close() throws IOException {
     logger.info("Closing {}", this);
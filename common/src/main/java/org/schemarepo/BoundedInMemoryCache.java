@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.schemarepo.config.Config;
+
+/**
+ * <p>
+ * A {@link BoundedInMemoryCache} is an implementation of {@link RepositoryCache}
+ * that uses {@link InMemorySubjectCache} and {@link LRUSchemaEntryCache}, so
+ * that the memory taken by the cached schemas is bounded.
+ */
+public class BoundedInMemoryCache extends RepositoryCache {
+
+  /**
+   * @param maxEntries the maximum number of schema entries cached, over all subjects
+   * @param maxBytes the maximum size in memory of the schema entries cached, over all subjects
+   */
+  public BoundedInMemoryCache(Integer maxEntries, Long maxBytes) {
+    this(maxEntries, maxBytes, 0L, 0);
+  }
+
+  /**
+   * @param maxEntries the maximum number of schema entries cached, over all subjects
+   * @param maxBytes the maximum size in memory of the schema entries cached, over all subjects
+   * @param missTtlMillis how long lookups that found nothing are cached for, 0 to not cache them
+   * @param maxMisses the maximum number of lookups that found nothing cached
+   */
+  @Inject
+  public BoundedInMemoryCache(@Named(Config.CACHE_MAX_ENTRIES) Integer maxEntries,
+      @Named(Config.CACHE_MAX_BYTES) Long maxBytes,
+      @Named(Config.CACHE_MISS_TTL) Long missTtlMillis,
+      @Named(Config.CACHE_MAX_MISSES) Integer maxMisses) {
+    super(new InMemorySubjectCache(), new LRUSchemaEntryCache.Factory(maxEntries, maxBytes),
+        missTtlMillis, maxMisses);
+  }
+
+}
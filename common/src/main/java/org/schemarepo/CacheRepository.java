@@ -39,10 +39,17 @@ import javax.inject.Inject;
  * Similarly, a cached subject cannot cache the list of schemas, the subject configuration,
  * or the latest() schema because those are mutable.
  *
+ * The lookups of subjects and schemas that find nothing can also be cached,
+ * for a limited time, if the {@link RepositoryCache} is configured to. Such
+ * misses are forgotten when the missing subject or schema gets registered
+ * through this CacheRepository.
+ *
  */
 public class CacheRepository extends DelegatingRepository {
 
   private final RepositoryCache cache;
+  // null unless misses are cached
+  private final NegativeCache subjectMisses;
 
   /**
    * Create a caching repository that wraps the provided repository using the
@@ -54,13 +61,17 @@ public class CacheRepository extends DelegatingRepository {
   public CacheRepository(Repository repo, RepositoryCache cache) {
     super(repo);
     this.cache = cache;
+    this.subjectMisses = cache.createSubjectMissCache();
   }
 
   @Override
   public Subject register(String subjectName, SubjectConfig config) {
     Subject s = cache.lookup(subjectName);
     if (s == null) {
-      return cache.add(repo.register(subjectName, config));
+      s = cache.add(repo.register(subjectName, config));
+      if (subjectMisses != null) {
+        subjectMisses.remove(subjectName);
+      }
     }
     return s;
   }
@@ -69,7 +80,16 @@ public class CacheRepository extends DelegatingRepository {
   public Subject lookup(String subjectName) {
     Subject s = cache.lookup(subjectName);
     if (s == null) {
-      return cache.add(repo.lookup(subjectName));
+      if (subjectMisses == null) {
+        return cache.add(repo.lookup(subjectName));
+      }
+      if (subjectMisses.contains(subjectName)) {
+        return null;
+      }
+      s = cache.add(repo.lookup(subjectName));
+      if (s == null) {
+        subjectMisses.add(subjectName);
+      }
     }
     return s;
   }
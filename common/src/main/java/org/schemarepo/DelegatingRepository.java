@@ -43,6 +43,13 @@ public abstract class DelegatingRepository extends BaseRepository {
     }
   }
 
+  @Override
+  public void isReady() {
+    if (repo instanceof BaseRepository) {
+      ((BaseRepository)repo).isReady();
+    }
+  }
+
   @Override
   public Subject register(final String subjectName, final SubjectConfig config) {
     return repo.register(subjectName, config);
@@ -68,6 +68,11 @@ public abstract class DelegatingSubject extends Subject {
     return delegate.allEntries();
   }
 
+  @Override
+  protected SchemaEntry forwardRegistration(String schema) throws SchemaValidationException {
+    return delegate.forwardRegistration(schema);
+  }
+
   @Override
   public SubjectConfig getConfig() {
     return delegate.getConfig();
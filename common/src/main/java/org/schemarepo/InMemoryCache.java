@@ -17,6 +17,12 @@
  */
 
 package org.schemarepo;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.schemarepo.config.Config;
+
 /**
  * <p>
  * A {@link InMemoryCache} is an implementation of {@link RepositoryCache}
@@ -24,7 +30,17 @@ package org.schemarepo;
  */
 public class InMemoryCache extends RepositoryCache {
   public InMemoryCache() {
-    super(new InMemorySubjectCache(), new InMemorySchemaEntryCache.Factory());
+    this(0L, 0);
+  }
+
+  /**
+   * @param missTtlMillis how long lookups that found nothing are cached for, 0 to not cache them
+   * @param maxMisses the maximum number of lookups that found nothing cached
+   */
+  @Inject
+  public InMemoryCache(@Named(Config.CACHE_MISS_TTL) Long missTtlMillis,
+      @Named(Config.CACHE_MAX_MISSES) Integer maxMisses) {
+    super(new InMemorySubjectCache(), new InMemorySchemaEntryCache.Factory(), missTtlMillis, maxMisses);
   }
 
 }
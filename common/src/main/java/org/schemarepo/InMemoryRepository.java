@@ -43,19 +43,21 @@ public class InMemoryRepository extends AbstractBackendRepository {
 
   @Override
   protected void registerSubjectInBackend(final String subjectName, final SubjectConfig config) {
-    cacheSubject(new MemSubject(subjectName, config));
+    cacheSubject(new MemSubject(subjectName, config, schemaInterner));
   }
 
 
   private static class MemSubject extends Subject {
     private final InMemorySchemaEntryCache schemas = new InMemorySchemaEntryCache();
+    private final SchemaInterner schemaInterner;
     private SchemaEntry latest = null;
     private int nextId = 0;
     private SubjectConfig config;
 
-    protected MemSubject(String name, SubjectConfig config) {
+    protected MemSubject(String name, SubjectConfig config, SchemaInterner schemaInterner) {
       super(name);
       this.config = RepositoryUtil.safeConfig(config);
+      this.schemaInterner = schemaInterner;
     }
 
     @Override
@@ -67,7 +69,7 @@ public class InMemoryRepository extends AbstractBackendRepository {
     public synchronized SchemaEntry register(String schema)
         throws SchemaValidationException {
       String id = String.valueOf(nextId);
-      SchemaEntry toRegister = new SchemaEntry(id, schema);
+      SchemaEntry toRegister = new SchemaEntry(id, schemaInterner.intern(schema));
       SchemaEntry valueInCache = schemas.add(toRegister);
       if (toRegister == valueInCache) {
         // schema is new
@@ -104,7 +106,7 @@ public class InMemoryRepository extends AbstractBackendRepository {
     }
 
     @Override
-    public synchronized Iterable<SchemaEntry> allEntries() {
+    public Iterable<SchemaEntry> allEntries() {
       return schemas.values();
     }
 
@@ -18,24 +18,34 @@
 
 package org.schemarepo;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * An unbounded in memory {@link SchemaEntryCache} that never evicts any values;
+ * An unbounded in memory {@link SchemaEntryCache} that never evicts any values.
+ * Entries are indexed by the {@link SchemaFingerprint} of their schema.
+ * <br/>
+ * <br/>
+ * No method takes a lock: the entries are published in an immutable snapshot,
+ * replaced with a compare-and-set by {@link #add(SchemaEntry)}, and which
+ * {@link #values()} returns as is.
  */
 public class InMemorySchemaEntryCache implements SchemaEntryCache {
 
-  private final ConcurrentHashMap<String, SchemaEntry> schemaToEntry =
-      new ConcurrentHashMap<String, SchemaEntry>();
+  private final SchemaEntryIndex schemaToEntry = new SchemaEntryIndex();
   private final ConcurrentHashMap<String, SchemaEntry> idToSchema =
       new ConcurrentHashMap<String, SchemaEntry>();
-  private final LinkedList<SchemaEntry> schemasInOrder =
-      new LinkedList<SchemaEntry>();
+  private final AtomicReference<Snapshot> snapshot =
+      new AtomicReference<Snapshot>(new Snapshot(new SchemaEntry[0]));
 
   @Override
   public SchemaEntry lookupBySchema(String schema) {
+    if (null == schema) {
+      throw new NullPointerException("schema");
+    }
     return schemaToEntry.get(schema);
   }
 
@@ -45,22 +55,66 @@ public class InMemorySchemaEntryCache implements SchemaEntryCache {
   }
 
   @Override
-  public synchronized SchemaEntry add(SchemaEntry entry) {
+  public SchemaEntry add(SchemaEntry entry) {
     if (null == entry) {
       return entry;
     }
-    SchemaEntry prior = schemaToEntry.putIfAbsent(entry.getSchema(), entry);
+    SchemaEntry prior = schemaToEntry.putIfAbsent(entry);
     if (null != prior) {
-      entry = prior;
+      // only the thread that added the entry appends it to the snapshot
+      return prior;
     }
     idToSchema.put(entry.getId(), entry);
-    schemasInOrder.push(entry);
+    Snapshot current;
+    Snapshot next;
+    do {
+      current = snapshot.get();
+      SchemaEntry[] entries = Arrays.copyOf(current.entries, current.entries.length + 1);
+      entries[current.entries.length] = entry;
+      next = new Snapshot(entries);
+    } while (!snapshot.compareAndSet(current, next));
     return entry;
   }
 
-  /** return all of the values in this cache **/
-  public synchronized Iterable<SchemaEntry> values() {
-    return new ArrayList<SchemaEntry>(schemasInOrder);
+  /** return all of the values in this cache, the most recently added first **/
+  public Iterable<SchemaEntry> values() {
+    return snapshot.get();
+  }
+
+  /**
+   * The entries added so far, oldest first, iterated newest first.
+   */
+  private static final class Snapshot implements Iterable<SchemaEntry> {
+    private final SchemaEntry[] entries;
+
+    private Snapshot(SchemaEntry[] entries) {
+      this.entries = entries;
+    }
+
+    @Override
+    public Iterator<SchemaEntry> iterator() {
+      return new Iterator<SchemaEntry>() {
+        private int next = entries.length - 1;
+
+        @Override
+        public boolean hasNext() {
+          return next >= 0;
+        }
+
+        @Override
+        public SchemaEntry next() {
+          if (next < 0) {
+            throw new NoSuchElementException();
+          }
+          return entries[next--];
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      };
+    }
   }
 
   public static class Factory implements SchemaEntryCache.Factory {
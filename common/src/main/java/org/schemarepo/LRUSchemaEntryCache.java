@@ -0,0 +1,199 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded in memory {@link SchemaEntryCache} that evicts the least recently
+ * used entries. <br/>
+ * <br/>
+ * All the caches created by the same {@link Factory} share its limits: the
+ * maximum number of entries and the maximum weight, the weight of an entry
+ * being the size in memory of its schema and id strings. Once either limit is
+ * exceeded, the least recently added or looked up entries, whatever their
+ * cache, are evicted.
+ */
+public class LRUSchemaEntryCache implements SchemaEntryCache {
+
+  private final Pool pool;
+  // guarded by pool; the slot of a schema is found through the id of its entry
+  private final SchemaEntryIndex schemaToEntry = new SchemaEntryIndex();
+  private final Map<String, Slot> idToSlot = new HashMap<String, Slot>();
+
+  private LRUSchemaEntryCache(Pool pool) {
+    this.pool = pool;
+  }
+
+  @Override
+  public SchemaEntry lookupBySchema(String schema) {
+    if (null == schema) {
+      throw new NullPointerException("schema");
+    }
+    // fingerprinted before taking the lock
+    SchemaFingerprint fingerprint = SchemaFingerprint.of(schema);
+    synchronized (pool) {
+      SchemaEntry entry = schemaToEntry.get(fingerprint, schema);
+      if (null != entry) {
+        pool.touch(idToSlot.get(entry.getId()));
+      }
+      return entry;
+    }
+  }
+
+  @Override
+  public SchemaEntry lookupById(String id) {
+    if (null == id) {
+      throw new NullPointerException("id");
+    }
+    synchronized (pool) {
+      return pool.touch(idToSlot.get(id));
+    }
+  }
+
+  @Override
+  public SchemaEntry add(SchemaEntry entry) {
+    if (null == entry) {
+      return entry;
+    }
+    // fingerprinted before taking the lock
+    entry.getFingerprint();
+    synchronized (pool) {
+      SchemaEntry prior = schemaToEntry.putIfAbsent(entry);
+      if (null != prior) {
+        pool.touch(idToSlot.get(prior.getId()));
+        return prior;
+      }
+      Slot slot = new Slot(this, entry);
+      idToSlot.put(entry.getId(), slot);
+      pool.add(slot);
+      return entry;
+    }
+  }
+
+  // called by the pool, with its lock held
+  private void evict(Slot slot) {
+    SchemaEntry entry = slot.entry;
+    schemaToEntry.remove(entry);
+    if (idToSlot.get(entry.getId()) == slot) {
+      idToSlot.remove(entry.getId());
+    }
+  }
+
+  private static final class Slot {
+    private final LRUSchemaEntryCache owner;
+    private final SchemaEntry entry;
+    private final long weight;
+
+    private Slot(LRUSchemaEntryCache owner, SchemaEntry entry) {
+      this.owner = owner;
+      this.entry = entry;
+      // two bytes per char
+      this.weight = 2L * (entry.getSchema().length() + entry.getId().length());
+    }
+  }
+
+  /**
+   * The entries of all the caches of a factory, in least recently used order.
+   */
+  private static final class Pool {
+    private final int maxEntries;
+    private final long maxWeight;
+    // slots are compared by identity, the values are unused
+    private final LinkedHashMap<Slot, Boolean> slots = new LinkedHashMap<Slot, Boolean>(16, 0.75f, true);
+    private long weight;
+    private long evictions;
+
+    private Pool(int maxEntries, long maxWeight) {
+      this.maxEntries = maxEntries;
+      this.maxWeight = maxWeight;
+    }
+
+    // all the methods below are called with the pool's lock held
+
+    private SchemaEntry touch(Slot slot) {
+      if (null == slot) {
+        return null;
+      }
+      slots.get(slot);
+      return slot.entry;
+    }
+
+    private void add(Slot slot) {
+      slots.put(slot, Boolean.TRUE);
+      weight += slot.weight;
+      Iterator<Slot> eldest = slots.keySet().iterator();
+      while ((slots.size() > maxEntries || weight > maxWeight) && eldest.hasNext()) {
+        Slot evicted = eldest.next();
+        eldest.remove();
+        weight -= evicted.weight;
+        evictions++;
+        evicted.owner.evict(evicted);
+      }
+    }
+  }
+
+  /**
+   * Creates {@link LRUSchemaEntryCache} instances sharing the same limits.
+   */
+  public static class Factory implements SchemaEntryCache.Factory {
+    private final Pool pool;
+
+    /**
+     * @param maxEntries the maximum number of entries, over all the caches
+     * @param maxBytes the maximum weight of the entries, over all the caches
+     */
+    public Factory(int maxEntries, long maxBytes) {
+      if (maxEntries <= 0 || maxBytes <= 0) {
+        throw new IllegalArgumentException("The limits of the cache must be positive");
+      }
+      this.pool = new Pool(maxEntries, maxBytes);
+    }
+
+    @Override
+    public SchemaEntryCache createSchemaEntryCache() {
+      return new LRUSchemaEntryCache(pool);
+    }
+
+    /** @return the number of entries in all the caches */
+    public int size() {
+      synchronized (pool) {
+        return pool.slots.size();
+      }
+    }
+
+    /** @return the weight of the entries in all the caches */
+    public long weight() {
+      synchronized (pool) {
+        return pool.weight;
+      }
+    }
+
+    /** @return the number of entries evicted so far */
+    public long evictions() {
+      synchronized (pool) {
+        return pool.evictions;
+      }
+    }
+  }
+
+}
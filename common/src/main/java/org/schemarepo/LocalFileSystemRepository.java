@@ -19,28 +19,43 @@
 package org.schemarepo;
 
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
 import java.io.Writer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Properties;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -64,22 +79,42 @@ import org.slf4j.LoggerFactory;
  * order of schema registration for {@link Subject#latest()} and
  * {@link Subject#allEntries()}</li> <li>
  * One file per schema the contents of which are the schema encoded in UTF-8 and
- * the name of which is the schema id followed by the postfix '.schema'.</li>
- *
+ * the name of which is the schema id followed by the postfix '.schema'.
+ * Schema files can optionally be written compressed, see
+ * {@link SchemaCompressor}.</li>
+ * <br/>
+ * Optionally, schema registrations can go through a write-ahead journal, a
+ * file named '.journal' in the base directory. A registration is acknowledged
+ * once its journal record is fsync'd, which is shared with the concurrent
+ * registrations of all subjects, and is applied to the subject's files in the
+ * background. Records that were not applied yet are replayed at startup.
  */
 public class LocalFileSystemRepository extends AbstractBackendRepository {
 
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
   private static final String LOCKFILE = ".repo.lock";
+  private static final String JOURNAL = ".journal";
   private static final String SUBJECT_PROPERTIES = "subject.properties";
   private static final String SCHEMA_IDS = "schema_ids";
   private static final String SCHEMA_POSTFIX = ".schema";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
 
   private final File rootDir;
   private final FileChannel lockChannel;
   private final FileLock fileLock;
 
+  // subjects found at startup that have not been loaded yet
+  private final ConcurrentHashMap<String, FutureTask<Subject>> pendingSubjects =
+      new ConcurrentHashMap<String, FutureTask<Subject>>();
+  private final ExecutorService loader;
+  private volatile Throwable loadFailure;
+
+  // null unless registrations go through the journal
+  private final Journal journal;
+
+  private final SchemaCompressor compressor;
+
   /**
    * Create a LocalFileSystemRepository in the directory path provided. Locks a file
    * "repository.lock" to ensure no other object or process is running a
@@ -90,9 +125,46 @@ public class LocalFileSystemRepository extends AbstractBackendRepository {
    *
    * @param repoPath The path where to store the Repository's state
    */
+  public LocalFileSystemRepository(String repoPath, ValidatorFactory validators) {
+    this(repoPath, 0, false, validators);
+  }
+
+  /**
+   * Create a LocalFileSystemRepository in the directory path provided, loading
+   * the existing subjects on a pool of background threads. Subjects that are
+   * accessed before the pool gets to them are loaded on demand, and
+   * {@link #isReady()} fails until all of them are loaded.
+   *
+   * @param repoPath The path where to store the Repository's state
+   * @param loadThreads The number of threads loading subjects. If 0, all the
+   *          subjects are loaded before the constructor returns.
+   * @param groupCommit Whether schema registrations are made durable through
+   *          the journal, rather than written directly to the subject files.
+   */
+  public LocalFileSystemRepository(String repoPath, Integer loadThreads, Boolean groupCommit,
+      ValidatorFactory validators) {
+    this(repoPath, loadThreads, groupCommit, false, validators);
+  }
+
+  /**
+   * Create a LocalFileSystemRepository in the directory path provided.
+   *
+   * @param repoPath The path where to store the Repository's state
+   * @param loadThreads The number of threads loading subjects. If 0, all the
+   *          subjects are loaded before the constructor returns.
+   * @param groupCommit Whether schema registrations are made durable through
+   *          the journal, rather than written directly to the subject files.
+   * @param compressSchemas Whether new schema files are written compressed.
+   *          Existing files are read whatever their format.
+   */
   @Inject
-  public LocalFileSystemRepository(@Named(Config.LOCAL_FILE_SYSTEM_PATH) String repoPath, ValidatorFactory validators) {
+  public LocalFileSystemRepository(@Named(Config.LOCAL_FILE_SYSTEM_PATH) String repoPath,
+      @Named(Config.LOCAL_FILE_SYSTEM_LOAD_THREADS) Integer loadThreads,
+      @Named(Config.LOCAL_FILE_SYSTEM_GROUP_COMMIT) Boolean groupCommit,
+      @Named(Config.LOCAL_FILE_SYSTEM_COMPRESS_SCHEMAS) Boolean compressSchemas,
+      ValidatorFactory validators) {
     super(validators);
+    this.compressor = new SchemaCompressor(compressSchemas != null && compressSchemas);
     this.rootDir = new File(repoPath);
     if ((!rootDir.exists() && !rootDir.mkdirs()) || !rootDir.isDirectory()) {
       throw new java.lang.RuntimeException(
@@ -117,23 +189,123 @@ public class LocalFileSystemRepository extends AbstractBackendRepository {
       throw new IllegalStateException("Unable to lock repository directory: "
           + rootDir.getAbsolutePath(), e);
     }
-    // eagerly load up subjects
-    loadSubjects(rootDir, subjectCache);
+    // the journal needs to be replayed before the subjects are loaded
+    File journalFile = new File(rootDir, JOURNAL);
+    if (groupCommit != null && groupCommit) {
+      journal = new Journal(journalFile);
+    } else {
+      journal = null;
+      if (journalFile.exists()) {
+        replayJournal(journalFile);
+        journalFile.delete();
+      }
+    }
+    if (loadThreads == null || loadThreads <= 0) {
+      // eagerly load up subjects
+      loader = null;
+      loadSubjects(rootDir);
+    } else {
+      loader = Executors.newFixedThreadPool(loadThreads, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "subject-loader-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      loadSubjectsInBackground(rootDir);
+    }
   }
 
-  private void loadSubjects(File repoDir, SubjectCache subjects) {
+  private void loadSubjects(File repoDir) {
     for (File file : repoDir.listFiles()) {
       if (file.isDirectory()) {
-        subjects.add(new FileSubject(file));
+        cacheSubject(new FileSubject(file));
       }
     }
   }
 
+  private void loadSubjectsInBackground(File repoDir) {
+    List<FutureTask<Subject>> tasks = new ArrayList<FutureTask<Subject>>();
+    for (final File file : repoDir.listFiles()) {
+      if (file.isDirectory()) {
+        FutureTask<Subject> task = new FutureTask<Subject>(new Callable<Subject>() {
+          @Override
+          public Subject call() {
+            try {
+              Subject subject = cacheSubject(new FileSubject(file));
+              pendingSubjects.remove(file.getName());
+              return subject;
+            } catch (RuntimeException e) {
+              logger.error("Failed to load subject from {}", file, e);
+              loadFailure = e;
+              throw e;
+            }
+          }
+        });
+        pendingSubjects.put(file.getName(), task);
+        tasks.add(task);
+      }
+    }
+    logger.info("Loading {} subjects in the background", tasks.size());
+    for (FutureTask<Subject> task : tasks) {
+      loader.execute(task);
+    }
+    // let the threads go away once they are done
+    loader.shutdown();
+  }
+
+  /**
+   * If the subject was found at startup but has not been loaded yet, load it
+   * now, unless a loader thread is already at it, in which case wait for it.
+   *
+   * @return the loaded subject, or null if the subject was not pending
+   */
+  private Subject awaitSubject(String subjectName) {
+    FutureTask<Subject> task = pendingSubjects.get(subjectName);
+    if (task == null) {
+      return null;
+    }
+    // no-op if the task has already been started by a loader thread
+    task.run();
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while loading subject " + subjectName, e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Failed to load subject " + subjectName, e.getCause());
+    }
+  }
+
+  @Override
+  public void isReady() {
+    super.isReady();
+    if (loadFailure != null) {
+      throw new IllegalStateException("Failed to load subjects: " + loadFailure.getMessage());
+    }
+    int pending = pendingSubjects.size();
+    if (pending > 0) {
+      throw new IllegalStateException("Loading subjects, " + pending + " remaining");
+    }
+  }
+
   @Override
   public synchronized void close() {
     if (closed) {
       return;
     }
+    if (loader != null) {
+      loader.shutdownNow();
+    }
+    if (journal != null) {
+      journal.close();
+    }
+    if (compressor.isEnabled()) {
+      logger.info("Compression saved {} bytes out of {} written to schema files",
+          compressor.getBytesSaved(), compressor.getRawBytes());
+    }
     try {
       fileLock.release();
     } catch (IOException e) {
@@ -157,11 +329,38 @@ public class LocalFileSystemRepository extends AbstractBackendRepository {
 
   @Override
   protected Subject getSubjectInstance(final String subjectName) {
+    Subject loaded = awaitSubject(subjectName);
+    if (loaded == null) {
+      // a loader thread may have gotten to it in the meantime
+      loaded = subjectCache.lookup(subjectName);
+    }
+    if (loaded != null) {
+      return loaded;
+    }
     return new FileSubject(new File(rootDir, subjectName));
   }
 
+  @Override
+  protected boolean checkSubjectExistsInBackend(final String subjectName) {
+    return pendingSubjects.containsKey(subjectName)
+        || subjectCache.lookup(subjectName) != null;
+  }
+
+  @Override
+  public synchronized Iterable<Subject> subjects() {
+    isValid();
+    for (String subjectName : pendingSubjects.keySet()) {
+      awaitSubject(subjectName);
+    }
+    return super.subjects();
+  }
+
   @Override
   protected void registerSubjectInBackend(final String subjectName, final SubjectConfig config) {
+    if (awaitSubject(subjectName) != null || subjectCache.lookup(subjectName) != null) {
+      // found at startup, and loaded since
+      return;
+    }
     final File subjectDir = new File(rootDir, subjectName);
     if (subjectDir.exists()) {
       throw new RuntimeException(
@@ -195,6 +394,10 @@ public class LocalFileSystemRepository extends AbstractBackendRepository {
   }
 
   private static void writeToFile(File file, WriteOp op, boolean append) {
+    writeToFile(file, op, append, false);
+  }
+
+  private static void writeToFile(File file, WriteOp op, boolean append, boolean sync) {
     FileOutputStream out;
     try {
       out = new FileOutputStream(file, append);
@@ -207,6 +410,9 @@ public class LocalFileSystemRepository extends AbstractBackendRepository {
       BufferedWriter bwriter = new BufferedWriter(writer);
       op.write(bwriter);
       bwriter.flush();
+      if (sync) {
+        out.getFD().sync();
+      }
       bwriter.close();
       writer.close();
       out.close();
@@ -226,12 +432,131 @@ public class LocalFileSystemRepository extends AbstractBackendRepository {
   }
 
   private static void appendLineToFile(File file, final String line) {
+    appendLineToFile(file, line, false);
+  }
+
+  private static void appendLineToFile(File file, final String line, boolean sync) {
     writeToFile(file, new WriteOp() {
       @Override
       protected void write(Writer writer) throws IOException {
         writer.append(line).append('\n');
       }
-    }, true);
+    }, true, sync);
+  }
+
+  private void writeSchemaFile(File file, String schema) {
+    byte[] content = compressor.encode(schema);
+    try {
+      FileOutputStream out = new FileOutputStream(file);
+      try {
+        out.write(content);
+        out.getFD().sync();
+      } finally {
+        out.close();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to write and close file "
+          + file.getAbsolutePath(), e);
+    }
+  }
+
+  /**
+   * Makes a schema registered through the journal durable in the subject's
+   * files.
+   */
+  private void applyToSubjectFiles(String subjectName, SchemaEntry entry) {
+    File subjectDir = new File(rootDir, subjectName);
+    File idFile = new File(subjectDir, SCHEMA_IDS);
+    // the schema file goes first, a schema id must never refer to a missing file
+    writeSchemaFile(new File(subjectDir, entry.getId() + SCHEMA_POSTFIX), entry.getSchema());
+    appendLineToFile(idFile, entry.getId(), true);
+  }
+
+  /**
+   * Apply the records left in the journal file, if any, to the subject files
+   */
+  private void replayJournal(File file) {
+    if (!file.exists()) {
+      return;
+    }
+    try {
+      SegmentLog log = new SegmentLog(file);
+      try {
+        log.recover(new SegmentLog.RecordVisitor() {
+          @Override
+          public void visit(long offset, byte[] payload) {
+            try {
+              DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+              String subjectName = in.readUTF();
+              String id = in.readUTF();
+              byte[] schema = new byte[in.readInt()];
+              in.readFully(schema);
+              // the record may have been applied in full or in part already
+              File idFile = new File(new File(rootDir, subjectName), SCHEMA_IDS);
+              truncateTornLine(idFile);
+              if (!readSchemaIds(idFile).contains(Integer.valueOf(id))) {
+                applyToSubjectFiles(subjectName, new SchemaEntry(id, new String(schema, UTF_8)));
+              }
+            } catch (IOException e) {
+              throw new RuntimeException("Unable to decode journal record at offset " + offset, e);
+            }
+          }
+        });
+      } finally {
+        log.close();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to replay journal: " + file.getAbsolutePath(), e);
+    }
+  }
+
+  // drop the partial line left behind by a crash in the middle of an append
+  private static void truncateTornLine(File file) {
+    try {
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        long length = raf.length();
+        long end = length;
+        while (end > 0) {
+          raf.seek(end - 1);
+          if (raf.read() == '\n') {
+            break;
+          }
+          end--;
+        }
+        if (end < length) {
+          raf.setLength(end);
+        }
+      } finally {
+        raf.close();
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to repair file: " + file.getAbsolutePath(), e);
+    }
+  }
+
+  // schema ids from the schema id file, in order from oldest to newest
+  private static List<Integer> readSchemaIds(File idFile) {
+    Scanner s;
+    try {
+      s = new Scanner(idFile, "UTF-8");
+    } catch (FileNotFoundException e) {
+      throw new RuntimeException("Unable to read schema id file: "
+          + idFile.getAbsolutePath(), e);
+    }
+    List<Integer> ids = new ArrayList<Integer>();
+    try {
+      while (s.hasNextLine()) {
+        if (s.hasNext()) {
+          // only read non-empty lines
+          ids.add(s.nextInt());
+        }
+        s.nextLine();
+      }
+      return ids;
+    } finally {
+      s.close();
+    }
   }
 
   private static void dirExists(File dir) {
@@ -260,21 +585,156 @@ public class LocalFileSystemRepository extends AbstractBackendRepository {
   protected Map<String, String> exposeConfiguration() {
     final Map<String, String> properties = new LinkedHashMap<String, String>(super.exposeConfiguration());
     properties.put(Config.LOCAL_FILE_SYSTEM_PATH, rootDir.getAbsolutePath());
+    properties.put(Config.LOCAL_FILE_SYSTEM_COMPRESS_SCHEMAS, String.valueOf(compressor.isEnabled()));
     return properties;
   }
 
+  /**
+   * @return the codec of the schema files, which counts the bytes it saved
+   */
+  public SchemaCompressor getSchemaCompressor() {
+    return compressor;
+  }
+
+  /**
+   * Open the journal file, for registrations to be appended to
+   */
+  SegmentLog openJournal(File file) throws IOException {
+    return new SegmentLog(file);
+  }
+
   private abstract static class WriteOp {
     protected abstract void write(Writer writer) throws IOException;
   }
 
+  /**
+   * The write-ahead journal of schema registrations. Records are appended by
+   * the registering threads, which wait for a shared fsync, and applied to the
+   * subject files one at a time by a background thread. The journal is
+   * emptied whenever all of its records have been applied, unless one of them
+   * could not be, which is then left to be replayed at startup.
+   */
+  private class Journal {
+    private final SegmentLog log;
+    private final ExecutorService applier;
+    // records being appended or not yet applied; guarded by this
+    private int pending;
+    // whether a record could not be applied; guarded by this
+    private boolean unapplied;
+
+    private Journal(File file) {
+      replayJournal(file);
+      try {
+        log = openJournal(file);
+        log.truncate();
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to open journal: " + file.getAbsolutePath(), e);
+      }
+      applier = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "journal-applier");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+
+    /**
+     * Durably record the registration of the entry in the subject. Returns
+     * once the record is on disk; the subject files are updated later.
+     */
+    private void write(final String subjectName, final SchemaEntry entry) {
+      try {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(subjectName);
+        out.writeUTF(entry.getId());
+        byte[] schema = entry.getSchema().getBytes(UTF_8);
+        out.writeInt(schema.length);
+        out.write(schema);
+        out.flush();
+        synchronized (this) {
+          // so that the journal is not emptied under the record
+          pending++;
+        }
+        try {
+          // a record that cannot be forced to disk is dropped
+          log.commit(bytes.toByteArray());
+        } catch (IOException e) {
+          // nothing to apply
+          done(true);
+          throw e;
+        }
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to write to journal: "
+            + log.getFile().getAbsolutePath(), e);
+      }
+      applier.execute(new Runnable() {
+        @Override
+        public void run() {
+          boolean applied = false;
+          try {
+            applyToSubjectFiles(subjectName, entry);
+            applied = true;
+          } finally {
+            done(applied);
+          }
+        }
+      });
+    }
+
+    private synchronized void done(boolean applied) {
+      if (!applied) {
+        logger.error("Failed to apply a record of {}, it will be replayed at startup", log.getFile());
+        unapplied = true;
+      }
+      if (--pending == 0 && !unapplied) {
+        try {
+          log.truncate();
+        } catch (IOException e) {
+          logger.warn("Failed to truncate {}", log.getFile(), e);
+        }
+      }
+    }
+
+    /**
+     * Wait for the records to be applied, and close the journal
+     */
+    private void close() {
+      applier.shutdown();
+      try {
+        if (!applier.awaitTermination(1, TimeUnit.MINUTES)) {
+          logger.warn("Timed out applying {}, it will be replayed at startup", log.getFile());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      try {
+        log.close();
+      } catch (IOException e) {
+        logger.debug("Failed to close {}", log.getFile(), e);
+      }
+    }
+  }
+
   private class FileSubject extends Subject {
     private final File subjectDir;
     private final File idFile;
     private final File propertyFile;
     private final SubjectConfig config;
 
+    // guarded by this
     private int largestId = -1;
-    private SchemaEntry latest;
+
+    // in-memory index of the subject's content, built once when the subject is
+    // loaded and kept up to date by register(), so that lookups need no file I/O.
+    // Reads take no lock: an entry is added to the maps before it is published
+    // in entries, and entries is replaced rather than modified.
+    private final SchemaEntryIndex schemaToEntry = new SchemaEntryIndex();
+    private final Map<String, SchemaEntry> idToEntry = new ConcurrentHashMap<String, SchemaEntry>();
+    // oldest to newest, the last one is the latest
+    private volatile SchemaEntry[] entries = new SchemaEntry[0];
 
     private FileSubject(File dir) {
       super(dir.getName());
@@ -292,20 +752,23 @@ public class LocalFileSystemRepository extends AbstractBackendRepository {
       try {
         props.load(new FileInputStream(propertyFile));
         config = RepositoryUtil.configFromProperties(props);
-        Integer lastId = null;
         HashSet<String> schemaFileNames = getSchemaFiles();
         HashSet<Integer> foundIds = new HashSet<Integer>();
-        for (Integer id : getSchemaIds()) {
+        List<SchemaEntry> loaded = new ArrayList<SchemaEntry>();
+        for (Integer id : readSchemaIds(idFile)) {
           if (id > largestId) {
             largestId = id;
           }
-          lastId = id;
           if(!foundIds.add(id)) {
             throw new RuntimeException("Corrupt id file, id '" + id +
                 "' duplicated in " + idFile.getAbsolutePath());
           }
           fileReadable(getSchemaFile(id));
           schemaFileNames.remove(getSchemaFileName(id));
+          String idStr = id.toString();
+          SchemaEntry entry = new SchemaEntry(idStr, schemaInterner.intern(readSchemaForId(idStr)));
+          index(entry);
+          loaded.add(entry);
         }
         if (schemaFileNames.size() > 0) {
           throw new RuntimeException("Schema files found in subject directory "
@@ -313,10 +776,7 @@ public class LocalFileSystemRepository extends AbstractBackendRepository {
               + " that are not referenced in the " + SCHEMA_IDS + " file: "
               + schemaFileNames.toString());
         }
-        if (lastId != null) {
-          latest = new SchemaEntry(lastId.toString(),
-              readSchemaForId(lastId.toString()));
-        }
+        entries = loaded.toArray(new SchemaEntry[loaded.size()]);
       } catch (IOException e) {
         throw new RuntimeException("error initializing subject: "
             + subjectDir.getAbsolutePath(), e);
@@ -335,30 +795,45 @@ public class LocalFileSystemRepository extends AbstractBackendRepository {
       RepositoryUtil.validateSchemaOrSubject(schema);
       SchemaEntry entry = lookupBySchema(schema);
       if (entry == null) {
-        entry = createNewSchemaFile(schema);
-        appendLineToFile(idFile, entry.getId());
-        latest = entry;
+        schema = schemaInterner.intern(schema);
+        if (journal != null) {
+          entry = new SchemaEntry(String.valueOf(largestId + 1), schema);
+          journal.write(getName(), entry);
+          largestId++;
+        } else {
+          entry = createNewSchemaFile(schema);
+          appendLineToFile(idFile, entry.getId());
+        }
+        index(entry);
+        SchemaEntry[] newEntries = Arrays.copyOf(entries, entries.length + 1);
+        newEntries[entries.length] = entry;
+        entries = newEntries;
       }
       return entry;
     }
 
+    private void index(SchemaEntry entry) {
+      // should the same schema appear under several ids, the oldest one wins
+      schemaToEntry.putIfAbsent(entry);
+      idToEntry.put(entry.getId(), entry);
+    }
+
     private synchronized SchemaEntry createNewSchemaFile(String schema) {
       try {
 
         int newId = largestId + 1;
         File f = getSchemaFile(String.valueOf(newId));
         if (!f.exists() && f.createNewFile()) {
-          Writer output = new BufferedWriter(new FileWriter(f));
+          // as it is decoded by readAllAsString
+          OutputStream output = new FileOutputStream(f);
           try {
-            output.write(schema);
-            output.flush();
+            output.write(compressor.encode(schema));
           } finally {
             output.close();
           }
 
-          latest = new SchemaEntry(String.valueOf(newId), schema);
           largestId++;
-          return latest;
+          return new SchemaEntry(String.valueOf(newId), schema);
         } else {
           throw new RuntimeException(
               "Unable to register schema, schema file either exists already "
@@ -378,8 +853,9 @@ public class LocalFileSystemRepository extends AbstractBackendRepository {
     public synchronized SchemaEntry registerIfLatest(String schema,
         SchemaEntry latest) throws SchemaValidationException {
       isValid();
-      if (latest == this.latest // both null
-          || (latest != null && latest.equals(this.latest))) {
+      SchemaEntry current = latest();
+      if (latest == current // both null
+          || (latest != null && latest.equals(current))) {
         return register(schema);
       } else {
         return null;
@@ -387,46 +863,56 @@ public class LocalFileSystemRepository extends AbstractBackendRepository {
     }
 
     @Override
-    public synchronized SchemaEntry lookupBySchema(String schema) {
+    public SchemaEntry lookupBySchema(String schema) {
       isValid();
       RepositoryUtil.validateSchemaOrSubject(schema);
-      for (Integer id : getSchemaIds()) {
-        String idStr = id.toString();
-        String schemaInFile = readSchemaForIdOrNull(idStr);
-        if (schema.equals(schemaInFile)) {
-          return new SchemaEntry(idStr, schema);
-        }
-      }
-      return null;
+      return schemaToEntry.get(schema);
     }
 
     @Override
-    public synchronized SchemaEntry lookupById(String id) {
+    public SchemaEntry lookupById(String id) {
       isValid();
-      String schema = readSchemaForIdOrNull(id);
-      if (schema != null) {
-        return new SchemaEntry(id, schema);
-      }
-      return null;
+      return idToEntry.get(id);
     }
 
     @Override
-    public synchronized SchemaEntry latest() {
+    public SchemaEntry latest() {
       isValid();
-      return latest;
+      SchemaEntry[] snapshot = entries;
+      return snapshot.length == 0 ? null : snapshot[snapshot.length - 1];
     }
 
     @Override
-    public synchronized Iterable<SchemaEntry> allEntries() {
+    public Iterable<SchemaEntry> allEntries() {
       isValid();
-      List<SchemaEntry> entries = new ArrayList<SchemaEntry>();
-      for (Integer id : getSchemaIds()) {
-          String idStr = id.toString();
-          String schema = readSchemaForId(idStr);
-          entries.add(new SchemaEntry(idStr, schema));
-      }
-      Collections.reverse(entries);
-      return entries;
+      final SchemaEntry[] snapshot = entries;
+      // newest to oldest, over the entries registered so far
+      return new Iterable<SchemaEntry>() {
+        @Override
+        public Iterator<SchemaEntry> iterator() {
+          return new Iterator<SchemaEntry>() {
+            private int next = snapshot.length - 1;
+
+            @Override
+            public boolean hasNext() {
+              return next >= 0;
+            }
+
+            @Override
+            public SchemaEntry next() {
+              if (next < 0) {
+                throw new NoSuchElementException();
+              }
+              return snapshot[next--];
+            }
+
+            @Override
+            public void remove() {
+              throw new UnsupportedOperationException();
+            }
+          };
+        }
+      };
     }
 
     @Override
@@ -434,14 +920,6 @@ public class LocalFileSystemRepository extends AbstractBackendRepository {
       return true;
     }
 
-    private String readSchemaForIdOrNull(String id) {
-      try {
-        return readSchemaForId(id);
-      } catch (Exception e) {
-        return null;
-      }
-    }
-
     private String readSchemaForId(String id) {
       File schemaFile = getSchemaFile(id);
       return readSchemaFile(schemaFile);
@@ -458,15 +936,25 @@ public class LocalFileSystemRepository extends AbstractBackendRepository {
     }
 
     private String readAllAsString(File file) throws FileNotFoundException {
-      // a scanner that will read a whole file
-      Scanner s = new Scanner(file, "UTF-8").useDelimiter("\\A");
+      // map the whole file and decode it in one go
+      FileInputStream in = new FileInputStream(file);
       try {
-        return s.next();
-      } catch (NoSuchElementException e) {
-        throw new RuntimeException(
-            "file is empty: " + file.getAbsolutePath(), e);
+        FileChannel channel = in.getChannel();
+        long size = channel.size();
+        if (size == 0) {
+          throw new RuntimeException("file is empty: " + file.getAbsolutePath());
+        }
+        MappedByteBuffer contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        return compressor.decode(contents);
+      } catch (IOException e) {
+        throw new RuntimeException("Could not read file: "
+            + file.getAbsolutePath(), e);
       } finally {
-        s.close();
+        try {
+          in.close();
+        } catch (IOException e) {
+          logger.debug("Failed to close {}", file, e);
+        }
       }
     }
 
@@ -483,33 +971,6 @@ public class LocalFileSystemRepository extends AbstractBackendRepository {
       return new HashSet<String>(Arrays.asList(files));
     }
 
-    // schema ids from the schema id file, in order from oldest to newest
-    private List<Integer> getSchemaIds(){
-      Scanner s = getIdFileScanner();
-      List<Integer> ids = new ArrayList<Integer>();
-      try {
-        while (s.hasNextLine()) {
-          if(s.hasNext()) {
-            // only read non-empty lines
-            ids.add(s.nextInt());
-          }
-          s.nextLine();
-        }
-        return ids;
-      } finally {
-        s.close();
-      }
-    }
-
-    private Scanner getIdFileScanner() {
-      try {
-        return new Scanner(idFile, "UTF-8");
-      } catch (FileNotFoundException e) {
-        throw new RuntimeException("Unable to read schema id file: "
-            + idFile.getAbsolutePath(), e);
-      }
-    }
-
     private File getSchemaFile(String id) {
       return new File(subjectDir, getSchemaFileName(id));
     }
@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded cache of lookups that found nothing, each remembered for a fixed
+ * time. <br/>
+ * <br/>
+ * Unlike their results, the absence of a subject or of a schema is not
+ * immutable, so misses are only cached for a short while, and whoever creates
+ * what was missing must {@link #remove(Object)} it. Something created through
+ * another path, such as another schema repo instance, is only seen once its
+ * miss has expired. Thread-safe.
+ */
+final class NegativeCache {
+
+  private final long ttlNanos;
+  private final int maxEntries;
+  // key to expiry; all entries live equally long, so the eldest expire first
+  private final LinkedHashMap<Object, Long> expiries = new LinkedHashMap<Object, Long>();
+
+  /**
+   * @param ttlMillis how long a miss is remembered
+   * @param maxEntries how many misses are remembered at most
+   */
+  NegativeCache(long ttlMillis, int maxEntries) {
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    this.maxEntries = maxEntries;
+  }
+
+  /**
+   * @return a cache with the given limits, or null if misses are not to be
+   *         cached
+   */
+  static NegativeCache create(long ttlMillis, int maxEntries) {
+    return ttlMillis > 0 && maxEntries > 0 ? new NegativeCache(ttlMillis, maxEntries) : null;
+  }
+
+  /**
+   * @return whether a lookup of the given key missed recently
+   */
+  synchronized boolean contains(Object key) {
+    Long expiry = expiries.get(key);
+    if (expiry == null) {
+      return false;
+    }
+    if (expiry - System.nanoTime() <= 0) {
+      expiries.remove(key);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Remember that a lookup of the given key missed.
+   */
+  synchronized void add(Object key) {
+    long now = System.nanoTime();
+    expiries.remove(key);
+    expiries.put(key, now + ttlNanos);
+    Iterator<Map.Entry<Object, Long>> eldest = expiries.entrySet().iterator();
+    while (eldest.hasNext()) {
+      Map.Entry<Object, Long> entry = eldest.next();
+      if (expiries.size() <= maxEntries && entry.getValue() - now > 0) {
+        break;
+      }
+      eldest.remove();
+    }
+  }
+
+  /**
+   * Forget a miss, because what was missing was just created.
+   */
+  synchronized void remove(Object key) {
+    expiries.remove(key);
+  }
+
+  synchronized int size() {
+    return expiries.size();
+  }
+
+}
@@ -26,23 +26,52 @@ import javax.inject.Inject;
  * {@link SchemaEntryCache.Factory}, using
  * {@link Subject#cacheWith(Subject, SchemaEntryCache)} to wrap {@link Subject}
  * instances prior to insertion into the {@link SubjectCache}.
+ * <br/>
+ * It can also cache, for a limited time, the lookups that found nothing, of
+ * both subjects (through {@link CacheRepository}) and schemas.
  */
 public class RepositoryCache implements SubjectCache {
 
   private final SubjectCache subjects;
   private final SchemaEntryCache.Factory entryCacheFactory;
+  private final long missTtlMillis;
+  private final int maxMisses;
+  // the missing schemas of all the subjects; null unless misses are cached
+  private final NegativeCache schemaMisses;
 
   @Inject
   public RepositoryCache(SubjectCache subjects,
       SchemaEntryCache.Factory entryCacheFactory) {
+    this(subjects, entryCacheFactory, 0, 0);
+  }
+
+  /**
+   * @param missTtlMillis how long a lookup that found nothing is cached for.
+   *          If 0, such lookups are not cached.
+   * @param maxMisses how many lookups that found nothing are cached at most,
+   *          for schemas and for subjects each
+   */
+  public RepositoryCache(SubjectCache subjects,
+      SchemaEntryCache.Factory entryCacheFactory, long missTtlMillis, int maxMisses) {
     this.subjects = subjects;
     this.entryCacheFactory = entryCacheFactory;
+    this.missTtlMillis = missTtlMillis;
+    this.maxMisses = maxMisses;
+    this.schemaMisses = NegativeCache.create(missTtlMillis, maxMisses);
   }
 
   @Override
   public Subject add(Subject entry) {
     return subjects.add(Subject.cacheWith(entry,
-        entryCacheFactory.createSchemaEntryCache()));
+        entryCacheFactory.createSchemaEntryCache(), schemaMisses));
+  }
+
+  /**
+   * @return a cache for the subjects found missing, or null if misses are
+   *         not to be cached
+   */
+  NegativeCache createSubjectMissCache() {
+    return NegativeCache.create(missTtlMillis, maxMisses);
   }
 
   @Override
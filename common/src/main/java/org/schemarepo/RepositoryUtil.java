@@ -20,6 +20,9 @@ package org.schemarepo;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -46,6 +49,8 @@ import java.util.Properties;
  * </p>
  */
 public final class RepositoryUtil {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
   private RepositoryUtil() {
   }
 
@@ -127,6 +132,19 @@ public final class RepositoryUtil {
     return schemas;
   }
 
+  /**
+   * @return the SHA-256 of the provided string encoded in UTF-8
+   */
+  public static byte[] sha256(String val) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+    return digest.digest(val.getBytes(UTF_8));
+  }
+
   /**
    * Throws IllegalArgumentException if the string provided is null, or empty.
    */
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes schemas for storage by a backend, optionally compressing them. <br/>
+ * <br/>
+ * A compressed schema is stored as a zero byte, a format byte (1 for
+ * Deflate) and the Deflate stream of its UTF-8 encoding. Anything else is the
+ * plain UTF-8 encoding of the schema, which can never start with a zero byte,
+ * so that schemas stored before compression was enabled, or that did not get
+ * smaller when compressed, remain readable. Decoding always handles both,
+ * whether compression is enabled or not. <br/>
+ * <br/>
+ * The number of bytes the encoded schemas would have taken uncompressed, and
+ * the number they actually take, are counted.
+ */
+public final class SchemaCompressor {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final byte MAGIC = 0;
+  private static final byte DEFLATE = 1;
+  private static final int HEADER_SIZE = 2;
+  // smaller schemas do not compress well enough to be worth it
+  private static final int MIN_SIZE = 256;
+
+  private final boolean enabled;
+  private final AtomicLong rawBytes = new AtomicLong();
+  private final AtomicLong storedBytes = new AtomicLong();
+
+  /**
+   * @param enabled whether {@link #encode(String)} compresses schemas
+   */
+  public SchemaCompressor(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @return the content to store for the given schema
+   */
+  public byte[] encode(String schema) {
+    byte[] raw = schema.getBytes(UTF_8);
+    byte[] stored = raw;
+    if (enabled && raw.length >= MIN_SIZE) {
+      byte[] compressed = deflate(raw);
+      if (compressed.length < raw.length) {
+        stored = compressed;
+      }
+    }
+    rawBytes.addAndGet(raw.length);
+    storedBytes.addAndGet(stored.length);
+    return stored;
+  }
+
+  /**
+   * @param content content produced by {@link #encode(String)}, or the plain
+   *          UTF-8 encoding of a schema
+   */
+  public String decode(byte[] content) {
+    return decode(ByteBuffer.wrap(content));
+  }
+
+  /**
+   * @param content content produced by {@link #encode(String)}, or the plain
+   *          UTF-8 encoding of a schema, between its position and limit
+   */
+  public String decode(ByteBuffer content) {
+    if (content.remaining() == 0 || content.get(content.position()) != MAGIC) {
+      return UTF_8.decode(content).toString();
+    }
+    if (content.remaining() < HEADER_SIZE || content.get(content.position() + 1) != DEFLATE) {
+      throw new IllegalArgumentException("Unsupported schema compression format");
+    }
+    byte[] compressed = new byte[content.remaining() - HEADER_SIZE];
+    content.position(content.position() + HEADER_SIZE);
+    content.get(compressed);
+    return new String(inflate(compressed), UTF_8);
+  }
+
+  /**
+   * @return the number of bytes the schemas encoded so far take uncompressed
+   */
+  public long getRawBytes() {
+    return rawBytes.get();
+  }
+
+  /**
+   * @return the number of bytes the schemas encoded so far take in storage
+   */
+  public long getStoredBytes() {
+    return storedBytes.get();
+  }
+
+  /**
+   * @return the number of bytes saved by compressing the schemas encoded so far
+   */
+  public long getBytesSaved() {
+    return getRawBytes() - getStoredBytes();
+  }
+
+  private static byte[] deflate(byte[] raw) {
+    Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+    try {
+      deflater.setInput(raw);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + HEADER_SIZE);
+      out.write(MAGIC);
+      out.write(DEFLATE);
+      byte[] buffer = new byte[4096];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] inflate(byte[] compressed) {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(compressed);
+      ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+      byte[] buffer = new byte[4096];
+      while (!inflater.finished()) {
+        int inflated = inflater.inflate(buffer);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IllegalArgumentException("Truncated compressed schema");
+        }
+        out.write(buffer, 0, inflated);
+      }
+      return out.toByteArray();
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("Corrupt compressed schema", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+}
@@ -24,6 +24,9 @@ package org.schemarepo;
 public final class SchemaEntry {
   private final String id;
   private final String schema;
+  // computed on first use; racy like String#hashCode, SchemaFingerprint being
+  // immutable
+  private SchemaFingerprint fingerprint;
 
   /**
    * Primary constructor taking a literal id and schema.
@@ -57,6 +60,19 @@ public final class SchemaEntry {
     return schema;
   }
 
+  /**
+   * @return the {@link SchemaFingerprint} of the schema, computed once per
+   *         entry
+   */
+  public SchemaFingerprint getFingerprint() {
+    SchemaFingerprint result = fingerprint;
+    if (result == null) {
+      result = SchemaFingerprint.of(schema);
+      fingerprint = result;
+    }
+    return result;
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
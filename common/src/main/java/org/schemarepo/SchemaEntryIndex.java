@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An index of {@link SchemaEntry} instances by schema, keyed by the
+ * {@link SchemaFingerprint} of the schema rather than by the schema itself.
+ * <br/>
+ * <br/>
+ * The index holds no reference to the schemas but through its entries, and
+ * hashing a schema to look it up yields its fingerprint as well. Entries
+ * whose schemas share a fingerprint are kept side by side, and the schema of
+ * an entry is always compared with the one sought before it is returned.
+ * Reads take no lock. Thread-safe.
+ */
+public final class SchemaEntryIndex {
+
+  // a SchemaEntry, or a SchemaEntry[] should several schemas share a fingerprint
+  private final ConcurrentHashMap<SchemaFingerprint, Object> entries =
+      new ConcurrentHashMap<SchemaFingerprint, Object>();
+
+  /**
+   * @return the entry of the given schema, or null if there is none
+   */
+  public SchemaEntry get(String schema) {
+    return get(SchemaFingerprint.of(schema), schema);
+  }
+
+  /**
+   * @return the entry of the given schema, whose fingerprint is given, or null
+   *         if there is none
+   */
+  public SchemaEntry get(SchemaFingerprint fingerprint, String schema) {
+    return find(entries.get(fingerprint), schema);
+  }
+
+  /**
+   * Adds an entry, unless there already is one for its schema.
+   *
+   * @return the entry already indexed for the schema of the given one, or null
+   *         if the given one was added
+   */
+  public SchemaEntry putIfAbsent(SchemaEntry entry) {
+    return putIfAbsent(entry.getFingerprint(), entry);
+  }
+
+  SchemaEntry putIfAbsent(SchemaFingerprint fingerprint, SchemaEntry entry) {
+    String schema = entry.getSchema();
+    while (true) {
+      Object current = entries.get(fingerprint);
+      if (null == current) {
+        if (null == entries.putIfAbsent(fingerprint, entry)) {
+          return null;
+        }
+        continue;
+      }
+      SchemaEntry prior = find(current, schema);
+      if (null != prior) {
+        return prior;
+      }
+      if (entries.replace(fingerprint, current, append(current, entry))) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Removes an entry, if it is the one indexed for its schema.
+   */
+  public void remove(SchemaEntry entry) {
+    SchemaFingerprint fingerprint = entry.getFingerprint();
+    while (true) {
+      Object current = entries.get(fingerprint);
+      if (current == entry) {
+        if (entries.remove(fingerprint, current)) {
+          return;
+        }
+      } else if (current instanceof SchemaEntry[]) {
+        SchemaEntry[] colliding = (SchemaEntry[]) current;
+        int i = 0;
+        while (i < colliding.length && colliding[i] != entry) {
+          i++;
+        }
+        if (i == colliding.length) {
+          return;
+        }
+        Object next;
+        if (colliding.length == 2) {
+          next = colliding[1 - i];
+        } else {
+          SchemaEntry[] rest = new SchemaEntry[colliding.length - 1];
+          System.arraycopy(colliding, 0, rest, 0, i);
+          System.arraycopy(colliding, i + 1, rest, i, rest.length - i);
+          next = rest;
+        }
+        if (entries.replace(fingerprint, current, next)) {
+          return;
+        }
+      } else {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return the number of distinct fingerprints indexed
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  private static SchemaEntry find(Object indexed, String schema) {
+    if (indexed instanceof SchemaEntry) {
+      SchemaEntry entry = (SchemaEntry) indexed;
+      return entry.getSchema().equals(schema) ? entry : null;
+    }
+    if (indexed instanceof SchemaEntry[]) {
+      for (SchemaEntry entry : (SchemaEntry[]) indexed) {
+        if (entry.getSchema().equals(schema)) {
+          return entry;
+        }
+      }
+    }
+    return null;
+  }
+
+  private static Object append(Object indexed, SchemaEntry entry) {
+    if (indexed instanceof SchemaEntry) {
+      return new SchemaEntry[] { (SchemaEntry) indexed, entry };
+    }
+    SchemaEntry[] colliding = (SchemaEntry[]) indexed;
+    SchemaEntry[] appended = Arrays.copyOf(colliding, colliding.length + 1);
+    appended[colliding.length] = entry;
+    return appended;
+  }
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo;
+
+/**
+ * A 64-bit fingerprint of a schema. <br/>
+ * <br/>
+ * The fingerprint is the CRC-64-AVRO (Rabin) fingerprint of the UTF-8 bytes of
+ * the schema, as computed by Avro's
+ * <code>SchemaNormalization.fingerprint64</code>, but without encoding the
+ * schema first. Distinct schemas may share a fingerprint, however unlikely, so
+ * whatever is looked up by fingerprint must still be compared with the schema
+ * sought.
+ */
+public final class SchemaFingerprint {
+
+  private static final long EMPTY = 0xc15d213aa4d7a795L;
+  private static final long[] TABLE = new long[256];
+
+  static {
+    for (int i = 0; i < TABLE.length; i++) {
+      long fp = i;
+      for (int j = 0; j < 8; j++) {
+        fp = (fp >>> 1) ^ (EMPTY & -(fp & 1L));
+      }
+      TABLE[i] = fp;
+    }
+  }
+
+  private final long value;
+
+  SchemaFingerprint(long value) {
+    this.value = value;
+  }
+
+  /**
+   * @return the fingerprint of the given schema
+   */
+  public static SchemaFingerprint of(String schema) {
+    return new SchemaFingerprint(fingerprint64(schema));
+  }
+
+  /**
+   * @return the fingerprint of the given schema, as a long
+   */
+  public static long fingerprint64(String schema) {
+    long fp = EMPTY;
+    int length = schema.length();
+    for (int i = 0; i < length; i++) {
+      char c = schema.charAt(i);
+      if (c < 0x80) {
+        fp = update(fp, c);
+      } else if (c < 0x800) {
+        fp = update(fp, 0xc0 | (c >> 6));
+        fp = update(fp, 0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length
+          && Character.isLowSurrogate(schema.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, schema.charAt(++i));
+        fp = update(fp, 0xf0 | (codePoint >> 18));
+        fp = update(fp, 0x80 | ((codePoint >> 12) & 0x3f));
+        fp = update(fp, 0x80 | ((codePoint >> 6) & 0x3f));
+        fp = update(fp, 0x80 | (codePoint & 0x3f));
+      } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+        // unpaired, replaced like String.getBytes does
+        fp = update(fp, '?');
+      } else {
+        fp = update(fp, 0xe0 | (c >> 12));
+        fp = update(fp, 0x80 | ((c >> 6) & 0x3f));
+        fp = update(fp, 0x80 | (c & 0x3f));
+      }
+    }
+    return fp;
+  }
+
+  private static long update(long fp, int b) {
+    return (fp >>> 8) ^ TABLE[(int) (fp ^ b) & 0xff];
+  }
+
+  /** @return the fingerprint, as a long */
+  public long longValue() {
+    return value;
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (value ^ (value >>> 32));
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof SchemaFingerprint && ((SchemaFingerprint) obj).value == value;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%016x", value);
+  }
+
+}
@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns the schemas held in memory by a repository, like
+ * {@link String#intern()} does, but per repository. <br/>
+ * <br/>
+ * The same schema is commonly registered under many subjects. Subjects pass
+ * the schemas they keep through {@link #intern(String)}, so that each distinct
+ * schema is held once in memory however many subjects it is registered under,
+ * and their entries only reference it. This does not change how the backends
+ * store schemas; {@link SegmentLogRepository} also stores each distinct schema
+ * once. <br/>
+ * <br/>
+ * Schemas are never removed from a subject, so neither are they from the
+ * interner. Thread-safe.
+ */
+public final class SchemaInterner {
+
+  private final ConcurrentHashMap<String, String> schemas = new ConcurrentHashMap<String, String>();
+
+  /**
+   * @return the instance held by the interner with the same content as the
+   *         given schema, which is added to the interner if there is none yet
+   */
+  public String intern(String schema) {
+    if (schema == null) {
+      return null;
+    }
+    String prior = schemas.putIfAbsent(schema, schema);
+    return prior != null ? prior : schema;
+  }
+
+  /**
+   * @return the number of distinct schemas interned
+   */
+  public int size() {
+    return schemas.size();
+  }
+
+}
@@ -0,0 +1,366 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of length-prefixed, checksummed records. <br/>
+ * <br/>
+ * Each record is laid out as a 4 byte payload length, a 4 byte CRC32 of the
+ * payload, a 4 byte CRC32 of the 8 bytes before, and the payload itself.
+ * Records are addressed by the offset of their header in the file. <br/>
+ * <br/>
+ * {@link #append(byte[])} does not force the data to disk; callers that need
+ * durability call {@link #sync(long)} with the offset they got back. Concurrent
+ * callers waiting on {@link #sync(long)} share a single fsync (group commit).
+ * {@link #commit(byte[])} does both, and truncates the record away if it
+ * cannot be forced to disk, so that it is not recovered later.
+ * {@link #read(long)} may be called concurrently with appends.
+ */
+class SegmentLog implements Closeable {
+
+  static final int HEADER_SIZE = 12;
+  // the bytes of the header covered by its own checksum
+  private static final int CHECKED_HEADER_SIZE = 8;
+  // how much of the file is scanned at once for a valid record
+  private static final int SCAN_WINDOW_SIZE = 64 * 1024;
+
+  /**
+   * Receives the records found by {@link SegmentLog#recover(RecordVisitor)}
+   */
+  interface RecordVisitor {
+    void visit(long offset, byte[] payload);
+  }
+
+  private final File file;
+  private final RandomAccessFile raf;
+  private final FileChannel channel;
+  private final Object syncLock = new Object();
+
+  // end of the valid data; guarded by this
+  private long size;
+  // end of the data known to be on disk; guarded by syncLock
+  private volatile long syncedSize;
+  // the offset every record not yet on disk was truncated away from after a
+  // failed fsync, by number of such truncations before; guarded by this
+  private final List<Long> dropOffsets = new ArrayList<Long>();
+
+  SegmentLog(File file) throws IOException {
+    this.file = file;
+    this.raf = new RandomAccessFile(file, "rw");
+    this.channel = raf.getChannel();
+    this.size = channel.size();
+    this.syncedSize = size;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  synchronized long size() {
+    return size;
+  }
+
+  /**
+   * Scan the whole file from the start, handing each valid record to the
+   * visitor in order. An invalid record that no valid record follows is a
+   * torn one, left behind by a crash in the middle of a write, and is
+   * truncated away.
+   *
+   * @return the number of bytes that were truncated
+   * @throws IOException if the file cannot be read, or contains an invalid
+   *           record that is not at its end
+   */
+  synchronized long recover(RecordVisitor visitor) throws IOException {
+    long fileSize = channel.size();
+    long offset = 0;
+    while (offset < fileSize) {
+      byte[] payload = readValid(offset, fileSize);
+      if (payload == null) {
+        if (hasValidRecordAfter(offset, fileSize)) {
+          throw new IOException("Corrupt record at offset " + offset + " of "
+              + file.getAbsolutePath());
+        }
+        // the last write did not make it to disk in full
+        break;
+      }
+      visitor.visit(offset, payload);
+      offset += HEADER_SIZE + payload.length;
+    }
+    long truncated = fileSize - offset;
+    if (truncated > 0) {
+      channel.truncate(offset);
+      channel.force(true);
+    }
+    size = offset;
+    syncedSize = offset;
+    return truncated;
+  }
+
+  /**
+   * @return the payload of the record at the given offset, or null if there
+   *         is no full record with valid checksums there
+   */
+  private byte[] readValid(long offset, long fileSize) throws IOException {
+    if (fileSize - offset < HEADER_SIZE) {
+      return null;
+    }
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    readFully(header, offset);
+    if (!isValidHeader(header.array(), 0)) {
+      return null;
+    }
+    int length = header.getInt(0);
+    if (length < 0 || offset + HEADER_SIZE + length > fileSize) {
+      return null;
+    }
+    byte[] payload = new byte[length];
+    readFully(ByteBuffer.wrap(payload), offset + HEADER_SIZE);
+    return checksum(payload, 0, length) == header.getInt(4) ? payload : null;
+  }
+
+  /**
+   * @return whether a valid record starts anywhere after the given offset
+   */
+  private boolean hasValidRecordAfter(long offset, long fileSize) throws IOException {
+    ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW_SIZE);
+    long start = offset + 1;
+    while (fileSize - start >= HEADER_SIZE) {
+      window.clear();
+      window.limit((int) Math.min(window.capacity(), fileSize - start));
+      readFully(window, start);
+      int last = window.limit() - HEADER_SIZE;
+      for (int i = 0; i <= last; i++) {
+        if (isValidHeader(window.array(), i) && readValid(start + i, fileSize) != null) {
+          return true;
+        }
+      }
+      start += last + 1;
+    }
+    return false;
+  }
+
+  private static boolean isValidHeader(byte[] bytes, int position) {
+    return checksum(bytes, position, CHECKED_HEADER_SIZE)
+        == ByteBuffer.wrap(bytes, position + CHECKED_HEADER_SIZE, 4).getInt();
+  }
+
+  /**
+   * Append a record to the end of the file.
+   *
+   * @return the offset of the new record, to be passed to {@link #read(long)}
+   *         and {@link #sync(long)}
+   */
+  synchronized long append(byte[] payload) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+    buffer.putInt(payload.length);
+    buffer.putInt(checksum(payload, 0, payload.length));
+    buffer.putInt(checksum(buffer.array(), 0, CHECKED_HEADER_SIZE));
+    buffer.put(payload);
+    buffer.flip();
+    long offset = size;
+    long position = offset;
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+    size = position;
+    return offset;
+  }
+
+  /**
+   * Block until the record at the given offset, and every record before it,
+   * is on disk. A single fsync covers every record appended so far, so
+   * concurrent callers are batched together.
+   */
+  void sync(long offset) throws IOException {
+    if (offset < syncedSize) {
+      return;
+    }
+    synchronized (syncLock) {
+      if (offset < syncedSize) {
+        // somebody else's fsync covered us while we waited
+        return;
+      }
+      long upTo = size();
+      force();
+      syncedSize = upTo;
+    }
+  }
+
+  /**
+   * Append a record to the end of the file, and block until it is on disk. If
+   * it cannot be forced to disk, every record not yet known to be on disk,
+   * including those of concurrent commits, which then fail as well, is
+   * truncated away.
+   *
+   * @return the offset of the new record, to be passed to {@link #read(long)}
+   * @throws IOException if the record could not be forced to disk, and was
+   *           dropped
+   */
+  long commit(byte[] payload) throws IOException {
+    long offset;
+    int drops;
+    synchronized (this) {
+      offset = append(payload);
+      drops = dropOffsets.size();
+    }
+    if (offset < syncedSize && !dropped(offset, drops)) {
+      return offset;
+    }
+    synchronized (syncLock) {
+      if (dropped(offset, drops)) {
+        throw new IOException("Record at offset " + offset + " of "
+            + file.getAbsolutePath() + " was dropped after a failed sync");
+      }
+      if (offset < syncedSize) {
+        // somebody else's fsync covered us while we waited
+        return offset;
+      }
+      long upTo = size();
+      try {
+        force();
+      } catch (IOException e) {
+        dropUnsynced();
+        throw e;
+      }
+      syncedSize = upTo;
+    }
+    return offset;
+  }
+
+  /**
+   * Force the records appended so far, but not the file's metadata, to disk
+   */
+  void force() throws IOException {
+    channel.force(false);
+  }
+
+  /**
+   * @return whether the record appended at the given offset, after the given
+   *         number of drops, was dropped since
+   */
+  private synchronized boolean dropped(long offset, int drops) {
+    return drops < dropOffsets.size() && offset >= dropOffsets.get(drops);
+  }
+
+  // called holding syncLock, so that syncedSize does not move
+  private synchronized void dropUnsynced() throws IOException {
+    dropOffsets.add(syncedSize);
+    size = syncedSize;
+    channel.truncate(size);
+    channel.force(true);
+  }
+
+  /**
+   * Read the payload of the record at the given offset.
+   *
+   * @throws IOException if the record cannot be read or fails its checksum
+   */
+  byte[] read(long offset) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    readFully(header, offset);
+    int length = header.getInt(0);
+    if (!isValidHeader(header.array(), 0) || length < 0) {
+      throw new IOException("Checksum mismatch for the header of the record at offset "
+          + offset + " of " + file.getAbsolutePath());
+    }
+    byte[] payload = new byte[length];
+    readFully(ByteBuffer.wrap(payload), offset + HEADER_SIZE);
+    if (checksum(payload, 0, length) != header.getInt(4)) {
+      throw new IOException("Checksum mismatch for record at offset " + offset
+          + " of " + file.getAbsolutePath());
+    }
+    return payload;
+  }
+
+  /**
+   * Drop all the records in the file.
+   */
+  synchronized void truncate() throws IOException {
+    channel.truncate(0);
+    channel.force(true);
+    size = 0;
+    syncedSize = 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      channel.force(true);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new EOFException("Unexpected end of " + file.getAbsolutePath()
+            + " at offset " + position);
+      }
+      position += read;
+    }
+  }
+
+  /**
+   * Force the entries of a directory, such as a file just renamed into it, to
+   * disk. Directories can only be opened for that from Java 7 on, so this does
+   * nothing on older versions, and where the platform does not allow it.
+   */
+  static void syncDirectory(File dir) throws IOException {
+    FileChannel channel;
+    try {
+      // FileChannel.open(dir.toPath(), StandardOpenOption.READ)
+      Class<?> pathClass = Class.forName("java.nio.file.Path");
+      Class<?> optionClass = Class.forName("java.nio.file.OpenOption");
+      Object options = Array.newInstance(optionClass, 1);
+      Array.set(options, 0, Class.forName("java.nio.file.StandardOpenOption").getField("READ").get(null));
+      Object path = File.class.getMethod("toPath").invoke(dir);
+      channel = (FileChannel) FileChannel.class.getMethod("open", pathClass, options.getClass())
+          .invoke(null, path, options);
+    } catch (Exception e) {
+      // before Java 7, or where directories cannot be opened, such as on Windows
+      return;
+    }
+    try {
+      channel.force(true);
+    } finally {
+      channel.close();
+    }
+  }
+
+  private static int checksum(byte[] bytes, int offset, int length) {
+    CRC32 crc = new CRC32();
+    crc.update(bytes, offset, length);
+    return (int) crc.getValue();
+  }
+
+}
@@ -0,0 +1,588 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.schemarepo.config.Config;
+
+/**
+ * A {@link Repository} that persists all of its content in a single
+ * append-only log file. <br/>
+ * <br/>
+ * The {@link Repository} stores its data in a base directory holding a lock
+ * file and a file named 'repository.log'. The log is a sequence of
+ * length-prefixed, checksummed records (see {@link SegmentLog}) of two kinds:
+ * <li>
+ * A subject record, holding the name of a {@link Subject} and its
+ * configuration. It is written once, when the subject is registered.</li>
+ * <li>
+ * A schema record, holding the subject name, the schema id and the SHA-256 of
+ * the schema. It is written once, when the schema is registered. The first
+ * schema record of each distinct schema, whatever its subject, also holds the
+ * schema itself encoded in UTF-8; the others only refer to it by its SHA-256.
+ * </li>
+ * <br/>
+ * The log is scanned when the repository is opened, to build an in-memory
+ * index of every distinct schema by SHA-256: the offset of the record holding
+ * it, and the subjects and ids it is registered under. Subjects only reference
+ * the schemas of that index, whose bodies are read back from the log on
+ * demand. A schema registered under many subjects is thus stored once, and
+ * {@link #lookupBySchema(String)} finds it in all of them with a single hash
+ * lookup. Registrations are fsync'd before they are acknowledged;
+ * concurrent registrations, including ones on different subjects, share a
+ * single fsync. A registration whose record cannot be fsync'd fails, and its
+ * record is truncated away. <br/>
+ * <br/>
+ * Records never become obsolete in normal operation since subjects and schemas
+ * are immutable, but duplicate records (e.g. a write that was retried after a
+ * crash) and torn writes can be left behind. Compaction rewrites the log with
+ * only the live records, grouped by subject, and atomically replaces the old
+ * one. It runs when the repository is opened, if the log contains dead
+ * records.
+ */
+public class SegmentLogRepository extends AbstractBackendRepository {
+
+  private static final String LOCKFILE = ".repo.lock";
+  private static final String LOG_FILE = "repository.log";
+  private static final String COMPACTED_POSTFIX = ".compacted";
+
+  private static final byte SUBJECT_RECORD = 1;
+  private static final byte SCHEMA_RECORD = 2;
+  // size of a SHA-256
+  private static final int KEY_SIZE = 32;
+
+  private final File rootDir;
+  private final FileChannel lockChannel;
+  private final FileLock fileLock;
+
+  // compaction swaps the log and moves every record, so it takes the write
+  // lock; everything else that touches the log or the offsets takes the read lock
+  private final ReadWriteLock logLock = new ReentrantReadWriteLock();
+  private SegmentLog log;
+  // bytes of the duplicate records found when opening the log
+  private long deadBytes;
+
+  // subjects in registration order
+  private final Map<String, LogSubject> subjects = new LinkedHashMap<String, LogSubject>();
+  // every distinct schema, by SHA-256
+  private final ConcurrentMap<ByteBuffer, StoredSchema> storedSchemas = new ConcurrentHashMap<ByteBuffer, StoredSchema>();
+
+  /**
+   * Create a SegmentLogRepository in the directory path provided. Locks a file
+   * ".repo.lock" to ensure no other object or process is running a
+   * SegmentLogRepository from the same place.
+   *
+   * @param repoPath The path where to store the Repository's state
+   */
+  @Inject
+  public SegmentLogRepository(@Named(Config.SEGMENT_LOG_PATH) String repoPath,
+      ValidatorFactory validators) {
+    super(validators);
+    this.rootDir = new File(repoPath);
+    if ((!rootDir.exists() && !rootDir.mkdirs()) || !rootDir.isDirectory()) {
+      throw new java.lang.RuntimeException(
+          "Unable to create repo directory, or not a directory: "
+              + rootDir.getAbsolutePath());
+    }
+    // lock repository
+    try {
+      File lockfile = new File(rootDir, LOCKFILE);
+      lockfile.createNewFile();
+      @SuppressWarnings("resource") // raf is closed when lockChannel is closed
+      RandomAccessFile raf = new RandomAccessFile(lockfile, "rw");
+      lockChannel = raf.getChannel();
+      fileLock = lockChannel.tryLock();
+      if (fileLock != null) {
+        lockfile.deleteOnExit();
+      } else {
+        throw new IllegalStateException("Failed to lock file: "
+            + lockfile.getAbsolutePath());
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to lock repository directory: "
+          + rootDir.getAbsolutePath(), e);
+    }
+    try {
+      // a compaction that did not finish leaves its output behind
+      new File(rootDir, LOG_FILE + COMPACTED_POSTFIX).delete();
+      log = new SegmentLog(new File(rootDir, LOG_FILE));
+      // torn writes are truncated away, dead records are counted by the loader
+      log.recover(new Loader());
+      if (deadBytes > 0) {
+        compact();
+      }
+      for (LogSubject subject : subjects.values()) {
+        subject.loadLatest();
+      }
+    } catch (Exception e) {
+      close();
+      throw new RuntimeException("Unable to load repository log in: "
+          + rootDir.getAbsolutePath(), e);
+    }
+  }
+
+  /**
+   * Builds the in-memory state of the repository from the records in the log
+   */
+  private class Loader implements SegmentLog.RecordVisitor {
+    @Override
+    public void visit(long offset, byte[] payload) {
+      try {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        String subjectName = readString(in);
+        LogSubject subject = subjects.get(subjectName);
+        if (type == SUBJECT_RECORD) {
+          if (subject != null) {
+            deadBytes += SegmentLog.HEADER_SIZE + payload.length;
+            return;
+          }
+          Map<String, String> props = new HashMap<String, String>();
+          int count = in.readInt();
+          for (int i = 0; i < count; i++) {
+            props.put(readString(in), readString(in));
+          }
+          addSubject(new LogSubject(subjectName,
+              new SubjectConfig.Builder().set(props).build(), offset));
+        } else if (type == SCHEMA_RECORD) {
+          if (subject == null) {
+            throw new RuntimeException("Schema record at offset " + offset
+                + " refers to unknown subject " + subjectName);
+          }
+          int id = in.readInt();
+          byte[] key = new byte[KEY_SIZE];
+          in.readFully(key);
+          // the bytes of the schema itself, if the record holds it
+          int schemaBytes = in.available();
+          if (id < subject.count) {
+            deadBytes += SegmentLog.HEADER_SIZE + payload.length;
+          } else if (id == subject.count) {
+            StoredSchema stored = storedSchemas.get(ByteBuffer.wrap(key));
+            if (stored == null) {
+              if (schemaBytes == 0) {
+                throw new RuntimeException("Schema record at offset " + offset
+                    + " refers to a schema stored nowhere before");
+              }
+              stored = new StoredSchema(key, offset);
+              storedSchemas.put(ByteBuffer.wrap(key), stored);
+            } else {
+              // stored twice by concurrent registrations in different subjects
+              deadBytes += schemaBytes;
+            }
+            subject.index(stored);
+          } else {
+            throw new RuntimeException("Schema record at offset " + offset
+                + " skips ids of subject " + subjectName + ", expected id "
+                + subject.count + " but found " + id);
+          }
+        } else {
+          throw new RuntimeException("Unknown record type " + type
+              + " at offset " + offset);
+        }
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to decode record at offset " + offset, e);
+      }
+    }
+  }
+
+  private void addSubject(LogSubject subject) {
+    subjects.put(subject.getName(), subject);
+    cacheSubject(subject);
+  }
+
+  @Override
+  protected Subject getSubjectInstance(final String subjectName) {
+    final Subject subject = subjectCache.lookup(subjectName);
+    if (subject == null) {
+      throw new IllegalStateException("Unexpected: subject must've been cached by #registerSubjectInBackend");
+    }
+    return subject;
+  }
+
+  @Override
+  protected void registerSubjectInBackend(final String subjectName, final SubjectConfig config) {
+    SubjectConfig safeConfig = RepositoryUtil.safeConfig(config);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    logLock.readLock().lock();
+    try {
+      out.writeByte(SUBJECT_RECORD);
+      writeString(out, subjectName);
+      Map<String, String> props = safeConfig.asMap();
+      out.writeInt(props.size());
+      for (Map.Entry<String, String> entry : props.entrySet()) {
+        writeString(out, entry.getKey());
+        writeString(out, entry.getValue());
+      }
+      out.flush();
+      long offset = log.commit(bytes.toByteArray());
+      // registration is serialized by AbstractBackendRepository#register
+      addSubject(new LogSubject(subjectName, safeConfig, offset));
+    } catch (IOException e) {
+      throw new RuntimeException("Unable to register subject " + subjectName
+          + " in " + log.getFile().getAbsolutePath(), e);
+    } finally {
+      logLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Look up a schema in every subject at once.
+   *
+   * @return the entry of the schema in each subject it is registered under, by
+   *         subject name, or an empty map if there is none
+   */
+  public Map<String, SchemaEntry> lookupBySchema(String schema) {
+    isValid();
+    RepositoryUtil.validateSchemaOrSubject(schema);
+    Map<String, SchemaEntry> entries = new HashMap<String, SchemaEntry>();
+    StoredSchema stored = storedSchemas.get(ByteBuffer.wrap(RepositoryUtil.sha256(schema)));
+    if (stored != null) {
+      for (Map.Entry<LogSubject, Integer> ref : stored.ids.entrySet()) {
+        entries.put(ref.getKey().getName(), new SchemaEntry(String.valueOf(ref.getValue()), schema));
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Rewrite the log with only its live records.
+   */
+  private void compact() throws IOException {
+    logLock.writeLock().lock();
+    try {
+      File logFile = log.getFile();
+      File compactedFile = new File(rootDir, LOG_FILE + COMPACTED_POSTFIX);
+      logger.info("Compacting {}, {} dead bytes out of {}", logFile, deadBytes, log.size());
+      SegmentLog compacted = new SegmentLog(compactedFile);
+      Map<LogSubject, Long> subjectOffsets = new HashMap<LogSubject, Long>();
+      Map<StoredSchema, Long> schemaOffsets = new HashMap<StoredSchema, Long>();
+      try {
+        for (LogSubject subject : subjects.values()) {
+          subjectOffsets.put(subject, compacted.append(log.read(subject.subjectOffset)));
+          for (int id = 0; id < subject.count; id++) {
+            StoredSchema stored = subject.schemas[id];
+            // only the first record of each schema holds it
+            boolean first = !schemaOffsets.containsKey(stored);
+            long offset = compacted.append(schemaRecord(subject.getName(), id,
+                stored.key, first ? readSchema(stored) : null));
+            if (first) {
+              schemaOffsets.put(stored, offset);
+            }
+          }
+        }
+        compacted.sync(compacted.size());
+      } finally {
+        compacted.close();
+      }
+      log.close();
+      if (!compactedFile.renameTo(logFile)) {
+        throw new IOException("Unable to replace " + logFile.getAbsolutePath()
+            + " with " + compactedFile.getAbsolutePath());
+      }
+      // the rename itself must be on disk before anything is appended to the new log
+      SegmentLog.syncDirectory(rootDir);
+      log = new SegmentLog(logFile);
+      for (Map.Entry<LogSubject, Long> entry : subjectOffsets.entrySet()) {
+        entry.getKey().subjectOffset = entry.getValue();
+      }
+      for (Map.Entry<StoredSchema, Long> entry : schemaOffsets.entrySet()) {
+        entry.getKey().offset = entry.getValue();
+      }
+      deadBytes = 0;
+    } finally {
+      logLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    logLock.writeLock().lock();
+    try {
+      if (log != null) {
+        log.close();
+      }
+    } catch (IOException e) {
+      logger.warn("Failed to close {}", log.getFile(), e);
+    } finally {
+      logLock.writeLock().unlock();
+    }
+    try {
+      fileLock.release();
+    } catch (IOException e) {
+      // nothing to do here -- it was already released or there are underlying errors we cannot recover from
+      logger.debug("Failed to release the lock {}", fileLock, e);
+    } finally {
+      closed = true;
+      try {
+        lockChannel.close();
+      } catch (IOException e) {
+        // nothing to do here -- underlying errors but recovery not possible here or in client, and already closed
+        logger.debug("Failed to close lockChannel {}", lockChannel, e);
+      }
+    }
+    try {
+      super.close();
+    } catch (IOException e) {
+      // should never happen
+    }
+  }
+
+  @Override
+  protected Map<String, String> exposeConfiguration() {
+    final Map<String, String> properties = new LinkedHashMap<String, String>(super.exposeConfiguration());
+    properties.put(Config.SEGMENT_LOG_PATH, rootDir.getAbsolutePath());
+    return properties;
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes("UTF-8");
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+
+  /**
+   * @param schema
+   *          The schema, if the record is to hold it, or null
+   */
+  private static byte[] schemaRecord(String subjectName, int id, byte[] key,
+      String schema) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(SCHEMA_RECORD);
+    writeString(out, subjectName);
+    out.writeInt(id);
+    out.write(key);
+    if (schema != null) {
+      writeString(out, schema);
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  // called with the log lock held
+  private String readSchema(StoredSchema stored) throws IOException {
+    DataInputStream in = new DataInputStream(
+        new ByteArrayInputStream(log.read(stored.offset)));
+    in.readByte();
+    readString(in);
+    in.readInt();
+    in.readFully(new byte[KEY_SIZE]);
+    return readString(in);
+  }
+
+  /**
+   * A distinct schema, stored once in the log whatever the number of subjects
+   * it is registered under
+   */
+  private static final class StoredSchema {
+    private final byte[] key;
+    // offset of the record holding the schema; guarded by logLock
+    private long offset;
+    // the id of the schema in each subject it is registered under
+    private final ConcurrentMap<LogSubject, Integer> ids = new ConcurrentHashMap<LogSubject, Integer>();
+
+    private StoredSchema(byte[] key, long offset) {
+      this.key = key;
+      this.offset = offset;
+    }
+  }
+
+  private class LogSubject extends Subject {
+    private final SubjectConfig config;
+
+    // offset of the subject record; guarded by logLock
+    private long subjectOffset;
+    // the schema of each id
+    private StoredSchema[] schemas = new StoredSchema[4];
+    private int count;
+    private SchemaEntry latest;
+
+    private LogSubject(String name, SubjectConfig config, long subjectOffset) {
+      super(name);
+      this.config = config;
+      this.subjectOffset = subjectOffset;
+    }
+
+    @Override
+    public SubjectConfig getConfig() {
+      return config;
+    }
+
+    @Override
+    public boolean integralKeys() {
+      return true;
+    }
+
+    @Override
+    public synchronized SchemaEntry register(String schema)
+        throws SchemaValidationException {
+      isValid();
+      RepositoryUtil.validateSchemaOrSubject(schema);
+      byte[] key = RepositoryUtil.sha256(schema);
+      SchemaEntry entry = lookup(key, schema);
+      if (entry != null) {
+        return entry;
+      }
+      int id = count;
+      logLock.readLock().lock();
+      try {
+        StoredSchema stored = storedSchemas.get(ByteBuffer.wrap(key));
+        // a schema the log already holds is only referred to
+        long offset = log.commit(schemaRecord(getName(), id, key,
+            stored == null ? schema : null));
+        if (stored == null) {
+          stored = new StoredSchema(key, offset);
+          StoredSchema prior = storedSchemas.putIfAbsent(ByteBuffer.wrap(key), stored);
+          if (prior != null) {
+            // another subject stored it concurrently, ours is left over
+            stored = prior;
+          }
+        }
+        index(stored);
+        latest = new SchemaEntry(String.valueOf(id), schemaInterner.intern(schema));
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to register schema in subject "
+            + getName(), e);
+      } finally {
+        logLock.readLock().unlock();
+      }
+      return latest;
+    }
+
+    @Override
+    public synchronized SchemaEntry registerIfLatest(String schema,
+        SchemaEntry latest) throws SchemaValidationException {
+      isValid();
+      if (latest == this.latest // both null
+          || (latest != null && latest.equals(this.latest))) {
+        return register(schema);
+      } else {
+        return null;
+      }
+    }
+
+    @Override
+    public synchronized SchemaEntry lookupBySchema(String schema) {
+      isValid();
+      RepositoryUtil.validateSchemaOrSubject(schema);
+      return lookup(RepositoryUtil.sha256(schema), schema);
+    }
+
+    private SchemaEntry lookup(byte[] key, String schema) {
+      StoredSchema stored = storedSchemas.get(ByteBuffer.wrap(key));
+      Integer id = stored == null ? null : stored.ids.get(this);
+      return id == null ? null : new SchemaEntry(String.valueOf(id), schema);
+    }
+
+    @Override
+    public synchronized SchemaEntry lookupById(String id) {
+      isValid();
+      int intId;
+      try {
+        intId = Integer.parseInt(id);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+      if (intId < 0 || intId >= count) {
+        return null;
+      }
+      return readEntry(intId);
+    }
+
+    @Override
+    public synchronized SchemaEntry latest() {
+      isValid();
+      return latest;
+    }
+
+    @Override
+    public synchronized Iterable<SchemaEntry> allEntries() {
+      isValid();
+      List<SchemaEntry> entries = new ArrayList<SchemaEntry>(count);
+      for (int id = count - 1; id >= 0; id--) {
+        entries.add(readEntry(id));
+      }
+      return entries;
+    }
+
+    // called with the subject and log locks held, or while loading
+    private void index(StoredSchema stored) {
+      if (count == schemas.length) {
+        schemas = Arrays.copyOf(schemas, count * 2);
+      }
+      schemas[count] = stored;
+      stored.ids.put(this, count);
+      count++;
+    }
+
+    // called once loaded
+    private void loadLatest() {
+      if (count > 0) {
+        SchemaEntry entry = readEntry(count - 1);
+        latest = new SchemaEntry(entry.getId(), schemaInterner.intern(entry.getSchema()));
+      }
+    }
+
+    private SchemaEntry readEntry(int id) {
+      logLock.readLock().lock();
+      try {
+        return new SchemaEntry(String.valueOf(id), readSchema(schemas[id]));
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to read schema " + id
+            + " of subject " + getName(), e);
+      } finally {
+        logLock.readLock().unlock();
+      }
+    }
+  }
+
+}
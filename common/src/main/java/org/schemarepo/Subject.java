@@ -18,8 +18,13 @@
 
 package org.schemarepo;
 
+import org.schemarepo.validation.SchemaEquivalence;
+
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A {@link Subject} is a collection of mutually compatible Schemas. <br/>
@@ -27,7 +32,10 @@ import java.util.List;
  * Validation of schemas is pluggable and each subject may have its own
  * validation rules defined with its own {@link Validator} when registered with
  * a {@link Repository}. To create a {@link Subject} that validates its schemas,
- * use {@link #validatingSubject(Subject, ValidatorFactory)}. <br/>
+ * use {@link #validatingSubject(Subject, ValidatorFactory)}. A subject may also
+ * be configured to map the schemas registered to the registered ones with the
+ * same canonical form, with
+ * {@link #canonicalizingSubject(Subject, ValidatorFactory)}. <br/>
  * <br/>
  * Caching of schemas is pluggable via
  * {@link #cacheWith(Subject, SchemaEntryCache)}. A {@link Subject} can only
@@ -175,6 +183,24 @@ public abstract class Subject {
    */
   public abstract Iterable<SchemaEntry> allEntries();
 
+  /**
+   * Register a schema through the repository performing the registrations of
+   * this subject on its behalf, if there is one. That repository validates
+   * the schema, so a subject validating its schemas does not validate the ones
+   * it forwards. Returns null by default.
+   *
+   * @param schema
+   *          The schema to register
+   * @return The {@link SchemaEntry} registered, or null if the registrations
+   *         of this subject are not forwarded, in which case nothing was done
+   * @throws SchemaValidationException
+   *           If the repository the registration was forwarded to rejected
+   *           the schema
+   */
+  protected SchemaEntry forwardRegistration(String schema) throws SchemaValidationException {
+    return null;
+  }
+
   /**
    * @return The name of the {@link Subject}
    */
@@ -210,6 +236,11 @@ public abstract class Subject {
       throw new IllegalStateException("Cannot register, subject is read-only");
     }
 
+    @Override
+    protected SchemaEntry forwardRegistration(String schema) {
+      throw new IllegalStateException("Cannot register, subject is read-only");
+    }
+
   }
 
   /**
@@ -262,6 +293,17 @@ public abstract class Subject {
 
     @Override
     public SchemaEntry register(String schema) throws SchemaValidationException {
+      // registering a schema again returns its id, whatever the validators
+      // would say, so it is not validated again
+      SchemaEntry existing = lookupBySchema(schema);
+      if (null != existing) {
+        return existing;
+      }
+      // validated by the repository it is forwarded to, against its own view
+      SchemaEntry forwarded = forwardRegistration(schema);
+      if (null != forwarded) {
+        return forwarded;
+      }
       while (true) {
         Iterable<SchemaEntry> schemaEntries = allEntries();
         SchemaEntry actualLatest = null;
@@ -298,6 +340,76 @@ public abstract class Subject {
     }
   }
 
+  /**
+   * Create a {@link Subject} that registers a schema with the same canonical
+   * form as a schema already registered by returning the entry of the latter,
+   * if the subject is configured to {@link SubjectConfig#canonicalize()
+   * canonicalize} schemas and the factory provides a canonical form. Otherwise,
+   * returns the provided subject without wrapping it.
+   */
+  public static Subject canonicalizingSubject(Subject subject, ValidatorFactory factory) {
+    if (null == subject || null == factory.getCanonicalForm() || !subject.getConfig().canonicalize()) {
+      return subject;
+    }
+    return new CanonicalizingSubject(subject, factory.getCanonicalForm());
+  }
+
+  private static class CanonicalizingSubject extends DelegatingSubject {
+    private static final Object NO_FORM = new Object();
+
+    private final SchemaEquivalence canonicalForm;
+    // the canonical forms of the entries seen, by id, or NO_FORM for the
+    // entries whose schema has none; a form memoized by the strategy is the
+    // same instance, so comparing it with the form of a schema is cheap
+    private final ConcurrentHashMap<String, Object> formsById = new ConcurrentHashMap<String, Object>();
+
+    private CanonicalizingSubject(Subject delegate, SchemaEquivalence canonicalForm) {
+      super(delegate);
+      this.canonicalForm = canonicalForm;
+    }
+
+    @Override
+    public SchemaEntry register(String schema) throws SchemaValidationException {
+      while (true) {
+        SchemaEntry existing = lookupBySchema(schema);
+        if (null != existing) {
+          return existing;
+        }
+        String form = canonicalForm.equivalenceKey(schema);
+        if (null == form) {
+          return super.register(schema);
+        }
+        SchemaEntry actualLatest = null;
+        for (SchemaEntry entry : allEntries()) {
+          if (null == actualLatest) {
+            actualLatest = entry;
+          }
+          if (form.equals(formOf(entry))) {
+            return entry;
+          }
+        }
+        // unless another schema was registered meanwhile, which may have the
+        // same canonical form
+        SchemaEntry registered = super.registerIfLatest(schema, actualLatest);
+        if (null != registered) {
+          return registered;
+        }
+      }
+    }
+
+    private Object formOf(SchemaEntry entry) {
+      Object form = formsById.get(entry.getId());
+      if (null == form) {
+        form = canonicalForm.equivalenceKey(entry.getSchema());
+        if (null == form) {
+          form = NO_FORM;
+        }
+        formsById.put(entry.getId(), form);
+      }
+      return form;
+    }
+  }
+
   /**
    * Create a {@link Subject} that caches id to schema mappings using the
    * {@link SchemaEntryCache} provided.
@@ -313,23 +425,41 @@ public abstract class Subject {
    *         cache is null, returns the provided subject without wrapping it.
    */
   public static Subject cacheWith(Subject subject, SchemaEntryCache cache) {
+    return cacheWith(subject, cache, null);
+  }
+
+  /**
+   * Same as {@link #cacheWith(Subject, SchemaEntryCache)}, also caching the
+   * lookups that found nothing in the provided {@link NegativeCache}, if not
+   * null.
+   */
+  static Subject cacheWith(Subject subject, SchemaEntryCache cache, NegativeCache misses) {
     return (null == subject || null == cache) ?
-        subject : new CachingSubject(subject, cache);
+        subject : new CachingSubject(subject, cache, misses);
   }
 
   private static class CachingSubject extends DelegatingSubject {
+    private static final String BY_ID = "id";
+    private static final String BY_SCHEMA = "schema";
+    // ids are supplied by whoever looks them up, the misses of longer ones are
+    // not cached
+    private static final int MAX_CACHED_ID_LENGTH = 64;
+
     private final SchemaEntryCache cache;
+    // null unless misses are cached; may be shared with other subjects
+    private final NegativeCache misses;
 
-    private CachingSubject(Subject delegate, SchemaEntryCache cache) {
+    private CachingSubject(Subject delegate, SchemaEntryCache cache, NegativeCache misses) {
       super(delegate);
       this.cache = cache;
+      this.misses = misses;
     }
 
     @Override
     public SchemaEntry register(String schema) throws SchemaValidationException {
       SchemaEntry entry = cache.lookupBySchema(schema);
       if (entry == null) {
-        return cache.add(super.register(schema));
+        return registered(cache.add(super.register(schema)));
       }
       return entry;
     }
@@ -337,14 +467,24 @@ public abstract class Subject {
     @Override
     public SchemaEntry registerIfLatest(String schema, SchemaEntry latest)
         throws SchemaValidationException {
-      return cache.add(super.registerIfLatest(schema, latest));
+      return registered(cache.add(super.registerIfLatest(schema, latest)));
     }
 
     @Override
     public SchemaEntry lookupBySchema(String schema) {
       SchemaEntry entry = cache.lookupBySchema(schema);
       if (entry == null) {
-        return cache.add(super.lookupBySchema(schema));
+        if (misses == null) {
+          return cache.add(super.lookupBySchema(schema));
+        }
+        Object key = schemaMissKey(schema);
+        if (misses.contains(key)) {
+          return null;
+        }
+        entry = cache.add(super.lookupBySchema(schema));
+        if (entry == null) {
+          misses.add(key);
+        }
       }
       return entry;
     }
@@ -353,11 +493,46 @@ public abstract class Subject {
     public SchemaEntry lookupById(String id) {
       SchemaEntry entry = cache.lookupById(id);
       if (entry == null) {
-        return cache.add(super.lookupById(id));
+        Object key = idMissKey(id);
+        if (key == null) {
+          return cache.add(super.lookupById(id));
+        }
+        if (misses.contains(key)) {
+          return null;
+        }
+        entry = cache.add(super.lookupById(id));
+        if (entry == null) {
+          misses.add(key);
+        }
+      }
+      return entry;
+    }
+
+    private SchemaEntry registered(SchemaEntry entry) {
+      if (entry != null && misses != null) {
+        Object idKey = idMissKey(entry.getId());
+        if (idKey != null) {
+          misses.remove(idKey);
+        }
+        misses.remove(schemaMissKey(entry.getSchema()));
       }
       return entry;
     }
 
+    // null if the misses of the id are not cached
+    private Object idMissKey(String id) {
+      if (misses == null || id.length() > MAX_CACHED_ID_LENGTH) {
+        return null;
+      }
+      return Arrays.asList(getName(), BY_ID, id);
+    }
+
+    // keyed by SHA-256 rather than by the schema, which may be large and is
+    // supplied by whoever looks it up
+    private Object schemaMissKey(String schema) {
+      return Arrays.asList(getName(), BY_SCHEMA, ByteBuffer.wrap(RepositoryUtil.sha256(schema)));
+    }
+
     @Override
     public Iterable<SchemaEntry> allEntries() {
       Iterable<SchemaEntry> all = super.allEntries();
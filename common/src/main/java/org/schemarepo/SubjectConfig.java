@@ -37,6 +37,8 @@ import java.util.Set;
 public class SubjectConfig {
   private static final SubjectConfig EMPTY = new Builder().build();
   public static final String VALIDATORS_KEY = Config.VALIDATOR_PREFIX + "validators";
+  // whether schemas registered with the same canonical form as a registered one map to its id
+  public static final String CANONICALIZE_KEY = Config.VALIDATION_PREFIX + "canonicalize";
 
   private final Map<String, String> conf;
   private final Set<String> validators;
@@ -54,6 +56,15 @@ public class SubjectConfig {
     return validators;
   }
 
+  /**
+   * @return whether registering a schema with the same canonical form as a
+   *         schema registered in the subject returns the id of the latter,
+   *         rather than registering a new schema. False unless set.
+   */
+  public boolean canonicalize() {
+    return Boolean.parseBoolean(conf.get(CANONICALIZE_KEY));
+  }
+
   public Map<String, String> asMap() {
     return conf;
   }
@@ -100,6 +111,8 @@ public class SubjectConfig {
       if(key.startsWith(RESERVED_PREFIX)) {
         if(VALIDATORS_KEY.equals(key)) {
           setValidators(RepositoryUtil.commaSplit(value));
+        } else if(CANONICALIZE_KEY.equals(key)) {
+          setCanonicalize(Boolean.parseBoolean(value));
         } else {
           throw new RuntimeException("SubjectConfig keys starting with '" +
               RESERVED_PREFIX + "' are reserved, failed to set: " + key +
@@ -128,6 +141,11 @@ public class SubjectConfig {
       return this;
     }
 
+    public Builder setCanonicalize(boolean canonicalize) {
+      this.conf.put(CANONICALIZE_KEY, String.valueOf(canonicalize));
+      return this;
+    }
+
     public SubjectConfig build() {
       return new SubjectConfig(
           Collections.unmodifiableMap(new HashMap<String, String>(conf)),
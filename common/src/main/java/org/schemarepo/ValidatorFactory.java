@@ -19,6 +19,7 @@
 package org.schemarepo;
 
 import org.schemarepo.config.Config;
+import org.schemarepo.validation.SchemaEquivalence;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -37,10 +38,13 @@ public class ValidatorFactory {
 
   private final HashMap<String, Validator> validators;
   private final Set<String> defaultSubjectValidators;
+  private final SchemaEquivalence canonicalForm;
 
-  private ValidatorFactory(HashMap<String, Validator> validators, Set<String> defaultSubjectValidators) {
+  private ValidatorFactory(HashMap<String, Validator> validators, Set<String> defaultSubjectValidators,
+      SchemaEquivalence canonicalForm) {
     this.validators = validators;
     this.defaultSubjectValidators = defaultSubjectValidators;
+    this.canonicalForm = canonicalForm;
   }
 
   /**
@@ -68,6 +72,16 @@ public class ValidatorFactory {
     return result;
   }
 
+  /**
+   * @return The {@link SchemaEquivalence} whose keys are the canonical forms of
+   *         the schemas, for the subjects configured to
+   *         {@link SubjectConfig#canonicalize() canonicalize} them, or null if
+   *         schemas cannot be canonicalized.
+   */
+  public final SchemaEquivalence getCanonicalForm() {
+    return canonicalForm;
+  }
+
   public static class Builder {
     private final HashMap<String, Validator> validators;
     {
@@ -76,6 +90,7 @@ public class ValidatorFactory {
     }
 
     private final Set<String> defaultSubjectValidators = new HashSet<String>();
+    private SchemaEquivalence canonicalForm;
 
     /**
      * Configure this builder to return a {@link ValidatorFactory} that maps the
@@ -103,8 +118,19 @@ public class ValidatorFactory {
       return this;
     }
 
+    /**
+     * Configure this builder to return a {@link ValidatorFactory} that
+     * canonicalizes schemas with the {@link SchemaEquivalence} provided, for the
+     * subjects configured to. Null, the default, disables canonicalization.
+     */
+    public Builder setCanonicalForm(SchemaEquivalence canonicalForm) {
+      this.canonicalForm = canonicalForm;
+      return this;
+    }
+
     public ValidatorFactory build() {
-      return new ValidatorFactory(new HashMap<String, Validator>(validators), new HashSet<String>(defaultSubjectValidators));
+      return new ValidatorFactory(new HashMap<String, Validator>(validators), new HashSet<String>(defaultSubjectValidators),
+          canonicalForm);
     }
   }
 
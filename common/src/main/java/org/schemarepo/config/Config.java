@@ -31,6 +31,13 @@ public class Config {
   public static final String GLOBAL_PREFIX = "schema-repo.";
   public static final String REPO_CLASS = GLOBAL_PREFIX + "class";
   public static final String REPO_CACHE = GLOBAL_PREFIX + "cache";
+  // Limits of the schema entries held by a bounded cache, such as BoundedInMemoryCache, over all subjects
+  public static final String CACHE_MAX_ENTRIES = REPO_CACHE + ".max-entries";
+  public static final String CACHE_MAX_BYTES = REPO_CACHE + ".max-bytes";
+  // How long (in ms) the cache remembers that a subject, schema or id was not found. 0, the default, disables caching misses.
+  public static final String CACHE_MISS_TTL = REPO_CACHE + ".miss-ttl";
+  // How many misses the cache remembers at most, for subjects and for schemas each
+  public static final String CACHE_MAX_MISSES = REPO_CACHE + ".max-misses";
 
   // MODULE_PREFIX is prefix for plugin modules to register in main config module.
   // used to register additional validation strategies.
@@ -51,6 +58,10 @@ public class Config {
   // names for strategies for the two included Validators (so a different strategy can be used for each)
   public static final String VALIDATION_ALL_VALIDATOR_STRATEGY = VALIDATION_PREFIX + "all-validator.strategy.class";
   public static final String VALIDATION_LATEST_VALIDATOR_STRATEGY = VALIDATION_PREFIX + "latest-validator.strategy.class";
+  // Number of threads AllValidator validates a schema against the previous ones with. 0 validates them sequentially.
+  public static final String VALIDATION_ALL_VALIDATOR_THREADS = VALIDATION_PREFIX + "all-validator.threads";
+  // How many pairwise validation outcomes the two included Validators remember. 0 remembers none.
+  public static final String VALIDATION_MEMO_MAX_ENTRIES = VALIDATION_PREFIX + "memo.max-entries";
 
 
   // Jetty configs
@@ -69,6 +80,16 @@ public class Config {
   // Local file system backend configs
   private static final String LOCAL_FILE_SYSTEM_PREFIX = GLOBAL_PREFIX + "local-file-system.";
   public static final String LOCAL_FILE_SYSTEM_PATH = LOCAL_FILE_SYSTEM_PREFIX + "path";
+  // Number of threads loading subjects in the background at startup. 0 loads them all before the repository is created.
+  public static final String LOCAL_FILE_SYSTEM_LOAD_THREADS = LOCAL_FILE_SYSTEM_PREFIX + "load-threads";
+  // Whether registrations go through a write-ahead journal, fsync'd in groups and applied to the subject files in the background.
+  public static final String LOCAL_FILE_SYSTEM_GROUP_COMMIT = LOCAL_FILE_SYSTEM_PREFIX + "group-commit";
+  // Whether schema files are written compressed. Uncompressed files are read either way.
+  public static final String LOCAL_FILE_SYSTEM_COMPRESS_SCHEMAS = LOCAL_FILE_SYSTEM_PREFIX + "compress-schemas";
+
+  // Segment log backend configs
+  private static final String SEGMENT_LOG_PREFIX = GLOBAL_PREFIX + "segment-log.";
+  public static final String SEGMENT_LOG_PATH = SEGMENT_LOG_PREFIX + "path";
 
   // ZooKeeper backend configs
   private static final String ZK_PREFIX = GLOBAL_PREFIX + "zookeeper.";
@@ -78,6 +99,17 @@ public class Config {
   public static final String ZK_CONNECTION_TIMEOUT = ZK_PREFIX + "connection-timeout";
   public static final String ZK_CURATOR_SLEEP_TIME_BETWEEN_RETRIES = ZK_PREFIX + "curator.sleep-time-between-retries";
   public static final String ZK_CURATOR_NUMBER_OF_RETRIES = ZK_PREFIX + "curator.number-of-retries";
+  // Whether a single, elected, instance performs the writes, the others forwarding them to it
+  public static final String ZK_LEADER_ELECTION = ZK_PREFIX + "leader-election";
+  // The URL of this instance's REST API, as reached by the other instances when it is the leader
+  public static final String ZK_ADVERTISED_URL = ZK_PREFIX + "advertised-url";
+  // Whether schema znodes are written compressed. Uncompressed znodes are read either way.
+  public static final String ZK_COMPRESS_SCHEMAS = ZK_PREFIX + "compress-schemas";
+
+  // Avro configs
+  private static final String AVRO_PREFIX = GLOBAL_PREFIX + "avro.";
+  // How many parsed schemas the Avro validation strategy keeps, shared by all its instances
+  public static final String AVRO_PARSED_SCHEMA_CACHE_MAX_ENTRIES = AVRO_PREFIX + "parsed-schema-cache.max-entries";
 
   // REST client config
   private static final String CLIENT_PREFIX = GLOBAL_PREFIX + "rest-client.";
@@ -94,6 +126,10 @@ public class Config {
   static {
     // General defaults
     DEFAULTS.setProperty(REPO_CACHE, InMemoryCache.class.getName());
+    DEFAULTS.setProperty(CACHE_MAX_ENTRIES, "100000");
+    DEFAULTS.setProperty(CACHE_MAX_BYTES, "268435456");
+    DEFAULTS.setProperty(CACHE_MISS_TTL, "0");
+    DEFAULTS.setProperty(CACHE_MAX_MISSES, "10000");
 
     // Jetty defaults
     DEFAULTS.setProperty(JETTY_HOST, "");
@@ -107,10 +143,17 @@ public class Config {
 
     // Validation defaults. The read strategy class is "Always Fail" unless configured.
     DEFAULTS.setProperty(VALIDATION_READ_STRATEGY_CLASS, "org.schemarepo.validation.AlwaysFailValidationStrategy");
+    DEFAULTS.setProperty(VALIDATION_MEMO_MAX_ENTRIES, "10000");
+    DEFAULTS.setProperty(VALIDATION_ALL_VALIDATOR_THREADS, "0");
 
     // Logging defaults
     DEFAULTS.setProperty(LOGGING_ROUTE_JUL_TO_SLF4J, "true");
 
+    // Local file system backend defaults
+    DEFAULTS.setProperty(LOCAL_FILE_SYSTEM_LOAD_THREADS, "0");
+    DEFAULTS.setProperty(LOCAL_FILE_SYSTEM_GROUP_COMMIT, "false");
+    DEFAULTS.setProperty(LOCAL_FILE_SYSTEM_COMPRESS_SCHEMAS, "false");
+
     // Zookeeper backend defaults
     DEFAULTS.setProperty(ZK_ENSEMBLE, "");
     DEFAULTS.setProperty(ZK_PATH_PREFIX, "/schema-repo");
@@ -118,6 +161,12 @@ public class Config {
     DEFAULTS.setProperty(ZK_CONNECTION_TIMEOUT, "2000");
     DEFAULTS.setProperty(ZK_CURATOR_SLEEP_TIME_BETWEEN_RETRIES, "2000");
     DEFAULTS.setProperty(ZK_CURATOR_NUMBER_OF_RETRIES, "10");
+    DEFAULTS.setProperty(ZK_LEADER_ELECTION, "false");
+    DEFAULTS.setProperty(ZK_ADVERTISED_URL, "");
+    DEFAULTS.setProperty(ZK_COMPRESS_SCHEMAS, "false");
+
+    // Avro defaults
+    DEFAULTS.setProperty(AVRO_PARSED_SCHEMA_CACHE_MAX_ENTRIES, "1000");
 
     // Client defaults
     DEFAULTS.setProperty(CLIENT_RETURN_NONE_ON_EXCEPTIONS, "true");
@@ -97,7 +97,13 @@ public class GsonJsonUtil implements JsonUtil {
 
   @Override
   public String schemasToJson(Iterable<SchemaEntry> allEntries) {
-    return GSON.toJson(allEntries);
+    // subjects may return any Iterable, which Gson only writes as an array if
+    // it is a Collection
+    List<SchemaEntry> entries = new ArrayList<SchemaEntry>();
+    for (SchemaEntry entry : allEntries) {
+      entries.add(entry);
+    }
+    return GSON.toJson(entries, SCHEMA_ENTRY_LIST_TYPE);
   }
 
   @Override
@@ -1,12 +1,26 @@
 package org.schemarepo.validation;
 import org.schemarepo.SchemaEntry;
+import org.schemarepo.SchemaFingerprint;
 import org.schemarepo.SchemaValidationException;
 import org.schemarepo.Validator;
 import org.schemarepo.config.Config;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>
@@ -18,26 +32,194 @@ import java.util.Map;
  * validate the Schema against each Schema in the Iterable, in Iterator
  * order, via {@link ValidationStrategy#validate(String, String)}.
  * </p>
+ * <p>
+ * Given threads, the pairwise validations are run in parallel. The validations
+ * against schemas following one which already failed are skipped, and the
+ * failure reported is the one of the first schema in Iterator order, as when
+ * validating sequentially.
+ * </p>
+ * <p>
+ * If the strategy is a {@link SchemaEquivalence}, the schema is only validated
+ * against the first of the schemas the strategy validates the same way, such
+ * as the versions of a schema differing only by their documentation, which
+ * does not change the outcome.
+ * </p>
  */
 public final class AllValidator implements Validator {
     private final ValidationStrategy strategy;
+    // null if the validations are run sequentially, on the calling thread
+    private final ExecutorService executor;
+
+    /**
+     * @param strategyMap
+     *          The map of all registered ValidationStrategy implementations to use for validation of pairwise schemas.
+     * @param validationStrategyClassName
+     *          The name of the class to use for this instance of Validator. Used as a key into the map of all strategies.
+     */
+    public AllValidator(Map<String,ValidationStrategy> strategyMap, String validationStrategyClassName) {
+        this(strategyMap, validationStrategyClassName, 0);
+    }
+
+    /**
+     * @param strategyMap
+     *          The map of all registered ValidationStrategy implementations to use for validation of pairwise schemas.
+     * @param validationStrategyClassName
+     *          The name of the class to use for this instance of Validator. Used as a key into the map of all strategies.
+     * @param memoMaxEntries
+     *          The maximum number of pairwise validation outcomes to remember, see {@link MemoizingValidationStrategy}. 0 remembers none.
+     */
+    public AllValidator(Map<String,ValidationStrategy> strategyMap, String validationStrategyClassName,
+            Integer memoMaxEntries) {
+        this(strategyMap, validationStrategyClassName, memoMaxEntries, 0);
+    }
 
     /**
      * @param strategyMap
      *          The map of all registered ValidationStrategy implementations to use for validation of pairwise schemas.
      * @param validationStrategyClassName
      *          The name of the class to use for this instance of Validator. Used as a key into the map of all strategies.
+     * @param memoMaxEntries
+     *          The maximum number of pairwise validation outcomes to remember, see {@link MemoizingValidationStrategy}. 0 remembers none.
+     * @param threads
+     *          The number of threads running the pairwise validations. 0 runs them sequentially, on the calling thread.
      */
     @Inject
-    public AllValidator(Map<String,ValidationStrategy> strategyMap, @Named(Config.VALIDATION_ALL_VALIDATOR_STRATEGY) String validationStrategyClassName) {
-        this.strategy = strategyMap.get(validationStrategyClassName);
+    public AllValidator(Map<String,ValidationStrategy> strategyMap, @Named(Config.VALIDATION_ALL_VALIDATOR_STRATEGY) String validationStrategyClassName,
+            @Named(Config.VALIDATION_MEMO_MAX_ENTRIES) Integer memoMaxEntries,
+            @Named(Config.VALIDATION_ALL_VALIDATOR_THREADS) Integer threads) {
+        this.strategy = MemoizingValidationStrategy.memoize(strategyMap.get(validationStrategyClassName), memoMaxEntries);
+        if (threads == null || threads <= 0) {
+            this.executor = null;
+        } else {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "all-validator-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            // idle validators hold no thread
+            pool.allowCoreThreadTimeOut(true);
+            this.executor = pool;
+        }
     }
 
     @Override
     public void validate(String toValidate, Iterable<SchemaEntry> schemasInOrder)
             throws SchemaValidationException {
+        // computed once rather than once per schema validated against
+        SchemaFingerprint fingerprint = MemoizingValidationStrategy.fingerprintFor(strategy, toValidate);
+        if (executor == null && !(strategy instanceof SchemaEquivalence)) {
+            for (SchemaEntry schemaEntry : schemasInOrder) {
+                MemoizingValidationStrategy.validate(strategy, toValidate, fingerprint, schemaEntry);
+            }
+            return;
+        }
+        List<SchemaEntry> schemas = representatives(schemasInOrder);
+        if (executor == null || schemas.size() < 2) {
+            for (SchemaEntry schemaEntry : schemas) {
+                MemoizingValidationStrategy.validate(strategy, toValidate, fingerprint, schemaEntry);
+            }
+            return;
+        }
+        validateInParallel(toValidate, fingerprint, schemas);
+    }
+
+    /**
+     * @return the first schema, in Iterator order, of each set of schemas the
+     *         strategy validates the same way, see {@link SchemaEquivalence}.
+     *         Validating against these only has the same outcome as validating
+     *         against all the schemas, and fails on the same first schema.
+     */
+    private List<SchemaEntry> representatives(Iterable<SchemaEntry> schemasInOrder) {
+        List<SchemaEntry> schemas = new ArrayList<SchemaEntry>();
+        if (!(strategy instanceof SchemaEquivalence)) {
+            for (SchemaEntry schemaEntry : schemasInOrder) {
+                schemas.add(schemaEntry);
+            }
+            return schemas;
+        }
+        SchemaEquivalence equivalence = (SchemaEquivalence) strategy;
+        Set<String> keys = new HashSet<String>();
+        // the schemas without a key are only interchangeable with themselves
+        Set<String> unclassified = new HashSet<String>();
         for (SchemaEntry schemaEntry : schemasInOrder) {
-            strategy.validate(toValidate, schemaEntry.getSchema());
+            String key = equivalence.equivalenceKey(schemaEntry.getSchema());
+            if (key != null ? keys.add(key) : unclassified.add(schemaEntry.getSchema())) {
+                schemas.add(schemaEntry);
+            }
+        }
+        return schemas;
+    }
+
+    private void validateInParallel(final String toValidate, final SchemaFingerprint fingerprint,
+            List<SchemaEntry> schemas)
+            throws SchemaValidationException {
+        // the index of the first schema known to fail validation
+        final AtomicInteger firstFailure = new AtomicInteger(schemas.size());
+        List<Future<Void>> validations = new ArrayList<Future<Void>>(schemas.size());
+        for (int i = 0; i < schemas.size(); i++) {
+            final int index = i;
+            final SchemaEntry existing = schemas.get(i);
+            validations.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws SchemaValidationException {
+                    if (index > firstFailure.get()) {
+                        // an earlier schema failed, whose failure is reported
+                        return null;
+                    }
+                    try {
+                        MemoizingValidationStrategy.validate(strategy, toValidate, fingerprint, existing);
+                    } catch (SchemaValidationException e) {
+                        recordFailure(index);
+                        throw e;
+                    } catch (RuntimeException e) {
+                        recordFailure(index);
+                        throw e;
+                    }
+                    return null;
+                }
+
+                private void recordFailure(int index) {
+                    int current;
+                    do {
+                        current = firstFailure.get();
+                    } while (index < current && !firstFailure.compareAndSet(current, index));
+                }
+            }));
+        }
+        try {
+            for (int i = 0; i < validations.size(); i++) {
+                if (i > firstFailure.get()) {
+                    validations.get(i).cancel(false);
+                    continue;
+                }
+                try {
+                    validations.get(i).get();
+                } catch (ExecutionException e) {
+                    // all the earlier validations passed, so this is the first failure
+                    for (int j = i + 1; j < validations.size(); j++) {
+                        validations.get(j).cancel(false);
+                    }
+                    Throwable cause = e.getCause();
+                    if (cause instanceof SchemaValidationException) {
+                        throw (SchemaValidationException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else {
+                        throw (Error) cause;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Future<Void> validation : validations) {
+                validation.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new SchemaValidationException("Interrupted while validating the schema", e);
         }
     }
 
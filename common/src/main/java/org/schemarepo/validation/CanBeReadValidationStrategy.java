@@ -13,7 +13,7 @@ import java.util.Map;
  *  can read the schema to validate according to the rules provided by the abstract canRead method.
  *  This is the opposite of the {@link CanReadValidationStrategy}.
  */
-public final class CanBeReadValidationStrategy implements ValidationStrategy {
+public final class CanBeReadValidationStrategy implements ValidationStrategy, SchemaEquivalence {
     private final ValidationStrategy readStrategy;
 
     /**
@@ -41,4 +41,12 @@ public final class CanBeReadValidationStrategy implements ValidationStrategy {
         // CanBeRead is just the opposite of CanRead, so pass the schemas in opposite order.
         readStrategy.validate(existing,toValidate);
     }
+
+    /**
+     * Schemas are interchangeable if they are for the wrapped strategy.
+     */
+    @Override
+    public String equivalenceKey(String schema) {
+        return readStrategy instanceof SchemaEquivalence ? ((SchemaEquivalence) readStrategy).equivalenceKey(schema) : null;
+    }
 }
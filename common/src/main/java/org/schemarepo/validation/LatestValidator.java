@@ -31,9 +31,22 @@ public class LatestValidator implements Validator {
      * @param validationStrategyClassName
      *          The class name of the concrete ValidationStrategy to use for this instance of Validator. Used as a key into the strategyMap map of all strategies.
      */
+    public LatestValidator(Map<String,ValidationStrategy> strategyMap, String validationStrategyClassName) {
+        this(strategyMap, validationStrategyClassName, 0);
+    }
+
+    /**
+     * @param strategyMap
+     *          The map of all registered ValidationStrategy implementations to use for validation of pairwise schemas.
+     * @param validationStrategyClassName
+     *          The class name of the concrete ValidationStrategy to use for this instance of Validator. Used as a key into the strategyMap map of all strategies.
+     * @param memoMaxEntries
+     *          The maximum number of pairwise validation outcomes to remember, see {@link MemoizingValidationStrategy}. 0 remembers none.
+     */
     @Inject
-    public LatestValidator(Map<String,ValidationStrategy> strategyMap, @Named(Config.VALIDATION_LATEST_VALIDATOR_STRATEGY) String validationStrategyClassName) {
-        this.strategy = strategyMap.get(validationStrategyClassName);
+    public LatestValidator(Map<String,ValidationStrategy> strategyMap, @Named(Config.VALIDATION_LATEST_VALIDATOR_STRATEGY) String validationStrategyClassName,
+            @Named(Config.VALIDATION_MEMO_MAX_ENTRIES) Integer memoMaxEntries) {
+        this.strategy = MemoizingValidationStrategy.memoize(strategyMap.get(validationStrategyClassName), memoMaxEntries);
     }
 
     @Override
@@ -41,7 +54,8 @@ public class LatestValidator implements Validator {
             throws SchemaValidationException {
         Iterator<SchemaEntry> schemas = schemasInOrder.iterator();
         if (schemas.hasNext()) {
-            strategy.validate(toValidate, schemas.next().getSchema());
+            MemoizingValidationStrategy.validate(strategy, toValidate,
+                    MemoizingValidationStrategy.fingerprintFor(strategy, toValidate), schemas.next());
         }
     }
 
@@ -0,0 +1,199 @@
+package org.schemarepo.validation;
+
+import org.schemarepo.SchemaEntry;
+import org.schemarepo.SchemaFingerprint;
+import org.schemarepo.SchemaValidationException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * A {@link ValidationStrategy} remembering the outcome of the validations of
+ * the {@link ValidationStrategy} it wraps, so that a pair of schemas which was
+ * already validated is not validated again.
+ * </p>
+ * <p>
+ * Strategies are expected to depend on nothing but the two schemas they are
+ * given, so their outcome can be remembered for good. Outcomes are keyed by the
+ * {@link SchemaFingerprint} of both schemas, and both schemas are kept and
+ * compared before an outcome is reused, since fingerprints can be made to
+ * collide. The existing schemas are registered ones, which the repository
+ * holds anyway. A failure remembered is
+ * thrown again wrapped in a new exception, whose cause is the original one. The
+ * least recently used outcomes are forgotten once the maximum number of
+ * outcomes is reached. Thread-safe.
+ * </p>
+ * <p>
+ * The instances wrapping a {@link SchemaEquivalence} are one too, with the same
+ * keys, and the others are not.
+ * </p>
+ */
+public class MemoizingValidationStrategy implements ValidationStrategy {
+    private final ValidationStrategy strategy;
+    // guarded by itself
+    private final LinkedHashMap<Pair, Outcome> outcomes;
+
+    /**
+     * @param strategy
+     *          The ValidationStrategy whose outcomes to remember.
+     * @param maxEntries
+     *          The maximum number of outcomes to remember.
+     */
+    private MemoizingValidationStrategy(ValidationStrategy strategy, final int maxEntries) {
+        this.strategy = strategy;
+        this.outcomes = new LinkedHashMap<Pair, Outcome>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Pair, Outcome> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the given strategy, remembering at most maxEntries outcomes, or
+     *         the given strategy itself if maxEntries is not positive
+     */
+    public static ValidationStrategy memoize(ValidationStrategy strategy, int maxEntries) {
+        if (strategy == null || maxEntries <= 0) {
+            return strategy;
+        }
+        if (strategy instanceof SchemaEquivalence) {
+            return new Equivalent(strategy, maxEntries);
+        }
+        return new MemoizingValidationStrategy(strategy, maxEntries);
+    }
+
+    @Override
+    public void validate(String toValidate, String existing)
+            throws SchemaValidationException {
+        validate(toValidate, SchemaFingerprint.of(toValidate), existing, SchemaFingerprint.of(existing));
+    }
+
+    /**
+     * Same as {@link #validate(String, String)}, but reuses the fingerprints
+     * already computed: the one of the schema validated, computed once for all
+     * the schemas it is validated against, and the one of the existing entry.
+     */
+    public void validate(String toValidate, SchemaFingerprint fingerprint, SchemaEntry existing)
+            throws SchemaValidationException {
+        validate(toValidate, fingerprint, existing.getSchema(), existing.getFingerprint());
+    }
+
+    /**
+     * Validate with the given strategy, through
+     * {@link #validate(String, SchemaFingerprint, SchemaEntry)} if it is a
+     * MemoizingValidationStrategy.
+     *
+     * @param fingerprint
+     *          The fingerprint of the schema validated, null if the strategy is
+     *          not a MemoizingValidationStrategy.
+     */
+    static void validate(ValidationStrategy strategy, String toValidate, SchemaFingerprint fingerprint,
+            SchemaEntry existing) throws SchemaValidationException {
+        if (fingerprint != null) {
+            ((MemoizingValidationStrategy) strategy).validate(toValidate, fingerprint, existing);
+        } else {
+            strategy.validate(toValidate, existing.getSchema());
+        }
+    }
+
+    /**
+     * @return the fingerprint of the schema to validate with the given strategy
+     *         if it is a MemoizingValidationStrategy, or null
+     */
+    static SchemaFingerprint fingerprintFor(ValidationStrategy strategy, String toValidate) {
+        return strategy instanceof MemoizingValidationStrategy ? SchemaFingerprint.of(toValidate) : null;
+    }
+
+    private void validate(String toValidate, SchemaFingerprint fingerprint, String existing,
+            SchemaFingerprint existingFingerprint) throws SchemaValidationException {
+        Pair pair = new Pair(fingerprint, existingFingerprint);
+        Outcome outcome;
+        synchronized (outcomes) {
+            outcome = outcomes.get(pair);
+        }
+        if (outcome != null && outcome.toValidate.equals(toValidate) && outcome.existing.equals(existing)) {
+            if (outcome.failure != null) {
+                throw new SchemaValidationException(outcome.failure.getMessage(), outcome.failure);
+            }
+            return;
+        }
+        try {
+            strategy.validate(toValidate, existing);
+        } catch (SchemaValidationException e) {
+            remember(pair, new Outcome(toValidate, existing, e));
+            throw e;
+        }
+        remember(pair, new Outcome(toValidate, existing, null));
+    }
+
+    private void remember(Pair pair, Outcome outcome) {
+        synchronized (outcomes) {
+            outcomes.put(pair, outcome);
+        }
+    }
+
+    /** @return the number of outcomes remembered */
+    public int size() {
+        synchronized (outcomes) {
+            return outcomes.size();
+        }
+    }
+
+    private static final class Equivalent extends MemoizingValidationStrategy implements SchemaEquivalence {
+        private final SchemaEquivalence equivalence;
+
+        private Equivalent(ValidationStrategy strategy, int maxEntries) {
+            super(strategy, maxEntries);
+            this.equivalence = (SchemaEquivalence) strategy;
+        }
+
+        /**
+         * Schemas are interchangeable if they are for the wrapped strategy.
+         */
+        @Override
+        public String equivalenceKey(String schema) {
+            return equivalence.equivalenceKey(schema);
+        }
+    }
+
+    private static final class Pair {
+        private final SchemaFingerprint toValidate;
+        private final SchemaFingerprint existing;
+
+        private Pair(SchemaFingerprint toValidate, SchemaFingerprint existing) {
+            this.toValidate = toValidate;
+            this.existing = existing;
+        }
+
+        @Override
+        public int hashCode() {
+            return toValidate.hashCode() * 31 + existing.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Pair)) {
+                return false;
+            }
+            Pair other = (Pair) obj;
+            return other.toValidate.equals(toValidate) && other.existing.equals(existing);
+        }
+    }
+
+    private static final class Outcome {
+        private final String toValidate;
+        private final String existing;
+        // the validation failure, null if the validation passed
+        private final SchemaValidationException failure;
+
+        private Outcome(String toValidate, String existing, SchemaValidationException failure) {
+            this.toValidate = toValidate;
+            this.existing = existing;
+            this.failure = failure;
+        }
+    }
+}
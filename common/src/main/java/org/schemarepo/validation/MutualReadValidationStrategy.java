@@ -13,7 +13,7 @@ import java.util.Map;
  * validate and the existing schema can mutually read each other according to
  * the rules provided by the abstract canRead method.
  */
-public final class MutualReadValidationStrategy implements ValidationStrategy {
+public final class MutualReadValidationStrategy implements ValidationStrategy, SchemaEquivalence {
     private final ValidationStrategy readStrategy;
 
     /**
@@ -43,4 +43,12 @@ public final class MutualReadValidationStrategy implements ValidationStrategy {
         readStrategy.validate(toValidate, existing);
         readStrategy.validate(existing, toValidate);
     }
+
+    /**
+     * Schemas are interchangeable if they are for the wrapped strategy.
+     */
+    @Override
+    public String equivalenceKey(String schema) {
+        return readStrategy instanceof SchemaEquivalence ? ((SchemaEquivalence) readStrategy).equivalenceKey(schema) : null;
+    }
 }
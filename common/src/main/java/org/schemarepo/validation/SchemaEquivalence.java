@@ -0,0 +1,27 @@
+package org.schemarepo.validation;
+
+/**
+ * <p>
+ * Implemented by the {@link ValidationStrategy} implementations which can tell
+ * schemas which they validate the same way apart from the others.
+ * </p>
+ * <p>
+ * Two schemas with the same key must be interchangeable for the strategy: the
+ * validation of any schema against either of them, and of either of them
+ * against any schema, must have the same outcome. The {@link AllValidator}
+ * relies on this to validate a schema against only one of the previous
+ * schemas sharing a key, and the subjects configured to canonicalize schemas
+ * map a schema to a registered one sharing its key.
+ * </p>
+ */
+public interface SchemaEquivalence {
+
+    /**
+     * @param schema
+     *          The schema to classify.
+     * @return the key of the schemas validated the same way as the given one,
+     *         or null if it is not known, the schema then only being
+     *         interchangeable with itself.
+     */
+    String equivalenceKey(String schema);
+}
@@ -18,6 +18,16 @@
 
 package org.schemarepo;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
 public class TestCacheRepository extends
     AbstractTestRepository<CacheRepository> {
 
@@ -25,4 +35,137 @@ public class TestCacheRepository extends
   protected CacheRepository createRepository() {
     return new CacheRepository(new InMemoryRepository(new ValidatorFactory.Builder().build()), new InMemoryCache());
   }
+
+  @Test
+  public void testMissesAreCached() throws Exception {
+    CountingRepository backend = new CountingRepository();
+    CacheRepository cached = new CacheRepository(backend, new InMemoryCache(60000L, 100));
+    assertNull(cached.lookup("missing"));
+    assertNull(cached.lookup("missing"));
+    assertEquals(1, backend.lookups.get());
+    Subject sub = cached.register("sub", null);
+    sub.register("sc0");
+    for (int i = 0; i < 3; i++) {
+      assertNull(sub.lookupById("1"));
+      assertNull(sub.lookupBySchema("sc1"));
+    }
+    assertEquals(2, backend.subjectLookups.get());
+  }
+
+  @Test
+  public void testMissesAreForgottenOnRegistration() throws Exception {
+    CacheRepository cached = new CacheRepository(new CountingRepository(), new InMemoryCache(60000L, 100));
+    assertNull(cached.lookup("sub"));
+    Subject sub = cached.register("sub", null);
+    assertNotNull(cached.lookup("sub"));
+    assertNull(sub.lookupById("0"));
+    assertNull(sub.lookupBySchema("sc0"));
+    sub.register("sc0");
+    assertEquals("sc0", sub.lookupById("0").getSchema());
+    assertEquals("0", sub.lookupBySchema("sc0").getId());
+  }
+
+  @Test
+  public void testMissesOfOverlongIdsAreNotCached() throws Exception {
+    CountingRepository backend = new CountingRepository();
+    CacheRepository cached = new CacheRepository(backend, new InMemoryCache(60000L, 100));
+    Subject sub = cached.register("sub", null);
+    StringBuilder id = new StringBuilder();
+    for (int i = 0; i < 65; i++) {
+      id.append('1');
+    }
+    assertNull(sub.lookupById(id.toString()));
+    assertNull(sub.lookupById(id.toString()));
+    assertEquals(2, backend.subjectLookups.get());
+  }
+
+  @Test
+  public void testMissNotMistakenForOneWithTheSameFingerprint() throws Exception {
+    // the whitespace makes their fingerprints collide
+    String missing = "{\"type\":\"record\",\"name\":\"R\",\"fields\":[]}" + whitespace(
+        "000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000");
+    String registered = "{\"type\":\"record\",\"name\":\"S\",\"fields\":[]}" + whitespace(
+        "101011110001100001010000111101001100110101000000011110110101011100000000000000000000000000000000");
+    assertEquals(SchemaFingerprint.of(missing), SchemaFingerprint.of(registered));
+
+    CountingRepository backend = new CountingRepository();
+    CacheRepository cached = new CacheRepository(backend, new InMemoryCache(60000L, 100));
+    Subject sub = cached.register("sub", null);
+    assertNull(sub.lookupBySchema(missing));
+    // registered behind the cache's back
+    backend.lookup("sub").register(registered);
+    assertEquals("0", sub.lookupBySchema(registered).getId());
+  }
+
+  /**
+   * @return a tab for each '1' and a space for each '0'
+   */
+  private static String whitespace(String bits) {
+    return bits.replace('1', '\t').replace('0', ' ');
+  }
+
+  @Test
+  public void testMissesExpire() throws Exception {
+    CountingRepository backend = new CountingRepository();
+    CacheRepository cached = new CacheRepository(backend, new InMemoryCache(20L, 100));
+    assertNull(cached.lookup("sub"));
+    // registered behind the cache's back
+    backend.register("sub", null);
+    assertNull(cached.lookup("sub"));
+    Thread.sleep(50);
+    assertNotNull(cached.lookup("sub"));
+  }
+
+  @Test
+  public void testMissesAreBounded() {
+    NegativeCache misses = new NegativeCache(60000L, 3);
+    for (int i = 0; i < 10; i++) {
+      misses.add("key" + i);
+    }
+    assertEquals(3, misses.size());
+    assertFalse(misses.contains("key0"));
+    assertTrue(misses.contains("key9"));
+  }
+
+  /**
+   * Counts the lookups that reach the backend
+   */
+  private static class CountingRepository extends DelegatingRepository {
+    private final AtomicInteger lookups = new AtomicInteger();
+    private final AtomicInteger subjectLookups = new AtomicInteger();
+
+    CountingRepository() {
+      super(new InMemoryRepository(new ValidatorFactory.Builder().build()));
+    }
+
+    @Override
+    public Subject register(String subjectName, SubjectConfig config) {
+      return count(super.register(subjectName, config));
+    }
+
+    @Override
+    public Subject lookup(String subjectName) {
+      lookups.incrementAndGet();
+      return count(super.lookup(subjectName));
+    }
+
+    private Subject count(Subject subject) {
+      if (subject == null) {
+        return null;
+      }
+      return new DelegatingSubject(subject) {
+        @Override
+        public SchemaEntry lookupById(String id) {
+          subjectLookups.incrementAndGet();
+          return super.lookupById(id);
+        }
+
+        @Override
+        public SchemaEntry lookupBySchema(String schema) {
+          subjectLookups.incrementAndGet();
+          return super.lookupBySchema(schema);
+        }
+      };
+    }
+  }
 }
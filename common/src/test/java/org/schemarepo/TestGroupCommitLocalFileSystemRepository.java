@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Runs the {@link LocalFileSystemRepository} tests with registrations going
+ * through the journal
+ */
+public class TestGroupCommitLocalFileSystemRepository extends TestLocalFileSystemRepository {
+
+  @Override
+  protected LocalFileSystemRepository createRepository() {
+    return new LocalFileSystemRepository(REPO_PATH, 0, true, new ValidatorFactory.Builder().build());
+  }
+
+  @Override
+  @Test
+  public void testLookupsServedFromIndex() throws SchemaValidationException {
+    // the schema files are written in the background, so they cannot be
+    // deleted reliably; registered schemas must be found before they exist
+    Subject sub = repo.register("indexed", null);
+    SchemaEntry foo = sub.register("foo");
+    SchemaEntry bar = sub.register("bar");
+    assertEquals(foo, sub.lookupById(foo.getId()));
+    assertEquals(bar, sub.lookupBySchema("bar"));
+    assertEquals(bar, sub.latest());
+    assertNull(sub.lookupBySchema("baz"));
+  }
+
+  @Test
+  public void testJournalIsReplayed() throws Exception {
+    repo.register("sub1", null).register("sc1");
+    repo.close();
+    File subjectDir = new File(REPO_PATH, "sub1");
+    // simulate a crash after the journal record was written, in the middle
+    // of appending the id to the subject
+    SegmentLog journal = new SegmentLog(new File(REPO_PATH, ".journal"));
+    try {
+      journal.append(journalRecord("sub1", "1", "sc2"));
+    } finally {
+      journal.close();
+    }
+    FileOutputStream out = new FileOutputStream(new File(subjectDir, "schema_ids"), true);
+    try {
+      out.write('1');
+    } finally {
+      out.close();
+    }
+
+    repo = createRepository();
+    Subject sub1 = repo.lookup("sub1");
+    assertEquals("sc2", sub1.latest().getSchema());
+    assertEquals("1", sub1.lookupBySchema("sc2").getId());
+    assertEquals("2", sub1.register("sc3").getId());
+    repo.close();
+    assertEquals(0, new File(REPO_PATH, ".journal").length());
+
+    // the subject files are complete without the journal
+    repo = new LocalFileSystemRepository(REPO_PATH, new ValidatorFactory.Builder().build());
+    assertEquals("sc3", repo.lookup("sub1").latest().getSchema());
+    assertNull(repo.lookup("sub1").lookupById("3"));
+  }
+
+  @Test
+  public void testConcurrentRegistrations() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<SchemaEntry>> results = new ArrayList<Future<SchemaEntry>>();
+      for (int i = 0; i < 8; i++) {
+        final Subject sub = repo.register("sub" + i, null);
+        for (int j = 0; j < 20; j++) {
+          final String schema = "schema" + j;
+          results.add(executor.submit(new Callable<SchemaEntry>() {
+            @Override
+            public SchemaEntry call() throws Exception {
+              return sub.register(schema);
+            }
+          }));
+        }
+      }
+      for (Future<SchemaEntry> result : results) {
+        result.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    repo.close();
+    repo = createRepository();
+    for (int i = 0; i < 8; i++) {
+      int count = 0;
+      for (SchemaEntry entry : repo.lookup("sub" + i).allEntries()) {
+        count++;
+      }
+      assertEquals(20, count);
+    }
+  }
+
+  @Test
+  public void testFailedSyncDropsTheRegistration() throws Exception {
+    repo.close();
+    final AtomicBoolean failSync = new AtomicBoolean();
+    repo = new LocalFileSystemRepository(REPO_PATH, 0, true, new ValidatorFactory.Builder().build()) {
+      @Override
+      SegmentLog openJournal(File file) throws IOException {
+        return new SegmentLog(file) {
+          @Override
+          void force() throws IOException {
+            if (failSync.get()) {
+              throw new IOException("Injected failure");
+            }
+            super.force();
+          }
+        };
+      }
+    };
+    Subject sub = repo.register("failing", null);
+    assertEquals("0", sub.register("sc0").getId());
+    failSync.set(true);
+    try {
+      sub.register("sc1");
+      fail("sc1 was registered");
+    } catch (RuntimeException e) {
+      // expected
+    }
+    failSync.set(false);
+    assertNull(sub.lookupBySchema("sc1"));
+    assertEquals("1", sub.register("sc2").getId());
+    repo.close();
+    // nothing was left pending by the failed registration
+    assertEquals(0, new File(REPO_PATH, ".journal").length());
+
+    repo = createRepository();
+    sub = repo.lookup("failing");
+    assertNull(sub.lookupBySchema("sc1"));
+    assertEquals("sc2", sub.lookupById("1").getSchema());
+    assertEquals("sc2", sub.latest().getSchema());
+  }
+
+  private static byte[] journalRecord(String subject, String id, String schema) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeUTF(subject);
+    out.writeUTF(id);
+    byte[] schemaBytes = schema.getBytes("UTF-8");
+    out.writeInt(schemaBytes.length);
+    out.write(schemaBytes);
+    out.flush();
+    return bytes.toByteArray();
+  }
+}
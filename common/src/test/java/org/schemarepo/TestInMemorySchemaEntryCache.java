@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class TestInMemorySchemaEntryCache {
+
+  @Test
+  public void testValuesNewestFirstWithoutDuplicates() {
+    InMemorySchemaEntryCache cache = new InMemorySchemaEntryCache();
+    SchemaEntry first = new SchemaEntry("0", "sc0");
+    SchemaEntry second = new SchemaEntry("1", "sc1");
+    cache.add(first);
+    cache.add(second);
+    // as CachingSubject does on every allEntries() call
+    assertSame(first, cache.add(new SchemaEntry("0", "sc0")));
+    assertSame(second, cache.add(new SchemaEntry("1", "sc1")));
+    Iterator<SchemaEntry> values = cache.values().iterator();
+    assertSame(second, values.next());
+    assertSame(first, values.next());
+    assertFalse(values.hasNext());
+  }
+
+  @Test
+  public void testValuesIsASnapshot() {
+    InMemorySchemaEntryCache cache = new InMemorySchemaEntryCache();
+    cache.add(new SchemaEntry("0", "sc0"));
+    Iterable<SchemaEntry> before = cache.values();
+    cache.add(new SchemaEntry("1", "sc1"));
+    Iterator<SchemaEntry> values = before.iterator();
+    assertEquals("0", values.next().getId());
+    assertFalse(values.hasNext());
+  }
+
+  @Test
+  public void testConcurrentAdds() throws InterruptedException {
+    final InMemorySchemaEntryCache cache = new InMemorySchemaEntryCache();
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[8];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          // every thread adds the same entries
+          for (int i = 0; i < 500; i++) {
+            cache.add(new SchemaEntry(String.valueOf(i), "sc" + i));
+          }
+        }
+      };
+      threads[t].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Set<String> ids = new HashSet<String>();
+    for (SchemaEntry entry : cache.values()) {
+      assertTrue(ids.add(entry.getId()));
+      assertSame(entry, cache.lookupById(entry.getId()));
+    }
+    assertEquals(500, ids.size());
+  }
+}
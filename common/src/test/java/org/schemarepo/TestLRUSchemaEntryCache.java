@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class TestLRUSchemaEntryCache {
+
+  @Test
+  public void testAddAndLookup() {
+    SchemaEntryCache cache = new LRUSchemaEntryCache.Factory(10, 1000).createSchemaEntryCache();
+    SchemaEntry entry = new SchemaEntry("0", "sc0");
+    assertNull(cache.add(null));
+    assertSame(entry, cache.add(entry));
+    // the entry already cached wins
+    assertSame(entry, cache.add(new SchemaEntry("0", "sc0")));
+    assertSame(entry, cache.lookupBySchema("sc0"));
+    assertSame(entry, cache.lookupById("0"));
+    assertNull(cache.lookupById("1"));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEntriesAreEvicted() {
+    LRUSchemaEntryCache.Factory factory = new LRUSchemaEntryCache.Factory(3, 1000);
+    SchemaEntryCache cache = factory.createSchemaEntryCache();
+    cache.add(new SchemaEntry("0", "sc0"));
+    cache.add(new SchemaEntry("1", "sc1"));
+    cache.add(new SchemaEntry("2", "sc2"));
+    // 0 becomes the most recently used
+    cache.lookupById("0");
+    cache.add(new SchemaEntry("3", "sc3"));
+    assertEquals(3, factory.size());
+    assertEquals(1, factory.evictions());
+    assertNull(cache.lookupById("1"));
+    assertNull(cache.lookupBySchema("sc1"));
+    assertEquals("sc0", cache.lookupById("0").getSchema());
+    assertEquals("2", cache.lookupBySchema("sc2").getId());
+  }
+
+  @Test
+  public void testLimitsAreSharedByTheFactoryCaches() {
+    // each entry weighs 2 * (3 + 1) bytes
+    LRUSchemaEntryCache.Factory factory = new LRUSchemaEntryCache.Factory(100, 24);
+    SchemaEntryCache first = factory.createSchemaEntryCache();
+    SchemaEntryCache second = factory.createSchemaEntryCache();
+    first.add(new SchemaEntry("0", "sc0"));
+    first.add(new SchemaEntry("1", "sc1"));
+    second.add(new SchemaEntry("0", "sc0"));
+    assertEquals(24, factory.weight());
+    second.add(new SchemaEntry("1", "sc1"));
+    assertEquals(24, factory.weight());
+    assertNull(first.lookupById("0"));
+    assertEquals("sc1", first.lookupById("1").getSchema());
+    assertEquals("sc0", second.lookupById("0").getSchema());
+    assertEquals("sc1", second.lookupById("1").getSchema());
+  }
+
+  @Test
+  public void testCachingSubject() throws SchemaValidationException {
+    LRUSchemaEntryCache.Factory factory = new LRUSchemaEntryCache.Factory(5, 1000);
+    Subject sub = Subject.cacheWith(
+        new InMemoryRepository(new ValidatorFactory.Builder().build()).register("sub", null),
+        factory.createSchemaEntryCache());
+    for (int i = 0; i < 20; i++) {
+      sub.register("sc" + i);
+    }
+    for (SchemaEntry entry : sub.allEntries()) {
+      assertEquals("sc" + entry.getId(), entry.getSchema());
+    }
+    assertEquals(5, factory.size());
+    // evicted entries are found in the subject
+    assertEquals("sc0", sub.lookupById("0").getSchema());
+    assertEquals("0", sub.lookupBySchema("sc0").getId());
+  }
+}
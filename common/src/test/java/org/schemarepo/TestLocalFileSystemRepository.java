@@ -18,10 +18,17 @@
 
 package org.schemarepo;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.After;
 import org.junit.BeforeClass;
@@ -30,7 +37,7 @@ import org.slf4j.LoggerFactory;
 
 public class TestLocalFileSystemRepository extends AbstractTestPersistentRepository<LocalFileSystemRepository> {
   private static final String TEST_PATH = "target/test/TestLocalFileSystemRepository-paths/";
-  private static final String REPO_PATH = "target/test/TestLocalFileSystemRepository/";
+  protected static final String REPO_PATH = "target/test/TestLocalFileSystemRepository/";
 
   @BeforeClass
   public static void setup() {
@@ -99,7 +106,143 @@ public class TestLocalFileSystemRepository extends AbstractTestPersistentReposit
     r.lookup("nothing");
   }
 
-  private static void rmDir(File dir) {
+  @Test
+  public void testLookupsServedFromIndex() throws SchemaValidationException {
+    Subject sub = repo.register("indexed", null);
+    SchemaEntry foo = sub.register("foo");
+    SchemaEntry bar = sub.register("bar");
+    // once registered, lookups must not go back to the schema files
+    File subjectDir = new File(REPO_PATH, "indexed");
+    assertTrue(new File(subjectDir, foo.getId() + ".schema").delete());
+    assertTrue(new File(subjectDir, bar.getId() + ".schema").delete());
+
+    assertEquals(foo, sub.lookupById(foo.getId()));
+    assertEquals(bar, sub.lookupBySchema("bar"));
+    assertNull(sub.lookupBySchema("baz"));
+    Iterator<SchemaEntry> all = sub.allEntries().iterator();
+    assertEquals(bar, all.next());
+    assertEquals(foo, all.next());
+    assertFalse(all.hasNext());
+  }
+
+  @Test
+  public void testWriteCloseReadUnicodeSchema() throws SchemaValidationException {
+    String schema = "{\"doc\": \"\u00e9t\u00e9 \u2603 \ud83d\ude00\"}";
+    repo.register("unicode", null).register(schema);
+    repo.close();
+    repo = createRepository();
+    Subject sub = repo.lookup("unicode");
+    assertEquals(schema, sub.lookupById("0").getSchema());
+    assertEquals("0", sub.lookupBySchema(schema).getId());
+  }
+
+  @Test
+  public void testSchemasSharedAcrossSubjects() throws SchemaValidationException {
+    for (int i = 0; i < 5; i++) {
+      repo.register("tenant" + i, null).register(new String("{\"type\": \"string\"}"));
+    }
+    repo.close();
+    repo = createRepository();
+    // loaded from different files, held once
+    assertSame(repo.lookup("tenant0").latest().getSchema(), repo.lookup("tenant4").latest().getSchema());
+  }
+
+  @Test
+  public void testCompressedSchemaFiles() throws SchemaValidationException {
+    StringBuilder sb = new StringBuilder("{\"type\": \"record\", \"fields\": [");
+    for (int i = 0; i < 100; i++) {
+      sb.append("{\"name\": \"field").append(i).append("\", \"type\": \"string\"},\n");
+    }
+    String plain = sb.append("]}").toString();
+    String compressed = plain.replace("string", "long");
+    repo.register("compressed", null).register(plain);
+    repo.close();
+    // files written before compression was enabled remain readable
+    LocalFileSystemRepository compressing =
+        new LocalFileSystemRepository(REPO_PATH, 0, false, true, new ValidatorFactory.Builder().build());
+    repo = compressing;
+    Subject sub = repo.lookup("compressed");
+    assertEquals(plain, sub.lookupById("0").getSchema());
+    assertEquals("1", sub.register(compressed).getId());
+    File subjectDir = new File(REPO_PATH, "compressed");
+    assertEquals(plain.length(), new File(subjectDir, "0.schema").length());
+    assertTrue(new File(subjectDir, "1.schema").length() * 4 < compressed.length());
+    assertTrue(compressing.getSchemaCompressor().getBytesSaved() > 0);
+    repo.close();
+    // and compressed files whether compression is enabled or not
+    repo = createRepository();
+    sub = repo.lookup("compressed");
+    assertEquals(compressed, sub.latest().getSchema());
+    assertEquals("1", sub.lookupBySchema(compressed).getId());
+  }
+
+  @Test
+  public void testBackgroundLoading() throws Exception {
+    for (int i = 0; i < 20; i++) {
+      Subject sub = repo.register("sub" + i, null);
+      sub.register("foo" + i);
+      sub.register("bar" + i);
+    }
+    repo.close();
+    repo = new LocalFileSystemRepository(REPO_PATH, 4, false, new ValidatorFactory.Builder().build());
+    // subjects can be used while the others are still loading
+    assertEquals("bar7", repo.lookup("sub7").latest().getSchema());
+    assertEquals("1", repo.register("sub3", null).lookupBySchema("bar3").getId());
+    assertNull(repo.lookup("nothing"));
+    int count = 0;
+    for (Subject s : repo.subjects()) {
+      count++;
+    }
+    assertEquals(20, count);
+    // all subjects were loaded by subjects()
+    repo.isReady();
+  }
+
+  @Test
+  public void testReadsDuringRegistration() throws Exception {
+    final Subject sub = repo.register("busy", null);
+    sub.register("schema0");
+    final AtomicBoolean done = new AtomicBoolean();
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] readers = new Thread[4];
+    for (int i = 0; i < readers.length; i++) {
+      readers[i] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            while (!done.get()) {
+              // every read must see a consistent prefix of the registrations
+              SchemaEntry latest = sub.latest();
+              assertEquals(latest, sub.lookupById(latest.getId()));
+              assertEquals(latest, sub.lookupBySchema(latest.getSchema()));
+              // allEntries() may have seen newer registrations than latest()
+              Iterator<SchemaEntry> all = sub.allEntries().iterator();
+              int expected = Integer.parseInt(all.next().getId());
+              assertTrue(expected >= Integer.parseInt(latest.getId()));
+              while (all.hasNext()) {
+                assertEquals(String.valueOf(--expected), all.next().getId());
+              }
+              assertEquals(0, expected);
+            }
+          } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+          }
+        }
+      });
+      readers[i].start();
+    }
+    for (int i = 1; i < 200; i++) {
+      sub.register("schema" + i);
+    }
+    done.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    assertNull(failure.get());
+    assertEquals("199", sub.latest().getId());
+  }
+
+  protected static void rmDir(File dir) {
     if (!dir.exists() || !dir.isDirectory()) {
       return;
     }
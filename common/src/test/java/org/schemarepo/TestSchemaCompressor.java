@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TestSchemaCompressor {
+
+  private static final String SMALL = "{\"type\": \"string\", \"doc\": \"\u00e9t\u00e9 \u2603\"}";
+
+  private static String large() {
+    StringBuilder sb = new StringBuilder("{\"type\": \"record\", \"name\": \"r\", \"fields\": [\n");
+    for (int i = 0; i < 200; i++) {
+      sb.append("  {\"name\": \"f").append(i).append("\", \"type\": \"int\", \"doc\": \"the field\"},\n");
+    }
+    return sb.append("]}").toString();
+  }
+
+  @Test
+  public void testRoundTrip() {
+    SchemaCompressor compressor = new SchemaCompressor(true);
+    String schema = large();
+    byte[] encoded = compressor.encode(schema);
+    assertEquals(0, encoded[0]);
+    assertTrue(encoded.length * 4 < schema.length());
+    assertEquals(schema, compressor.decode(encoded));
+    assertEquals(schema.length(), compressor.getRawBytes());
+    assertEquals(encoded.length, compressor.getStoredBytes());
+    assertEquals(schema.length() - encoded.length, compressor.getBytesSaved());
+  }
+
+  @Test
+  public void testSmallSchemasAreStoredPlain() {
+    SchemaCompressor compressor = new SchemaCompressor(true);
+    byte[] encoded = compressor.encode(SMALL);
+    assertArrayEquals(SMALL.getBytes(Charset.forName("UTF-8")), encoded);
+    assertEquals(SMALL, compressor.decode(encoded));
+    assertEquals(0, compressor.getBytesSaved());
+  }
+
+  @Test
+  public void testDisabledCompressorReadsBothFormats() {
+    SchemaCompressor disabled = new SchemaCompressor(false);
+    String schema = large();
+    byte[] plain = disabled.encode(schema);
+    assertEquals(schema.length(), plain.length);
+    byte[] compressed = new SchemaCompressor(true).encode(schema);
+    assertEquals(schema, disabled.decode(plain));
+    assertEquals(schema, disabled.decode(compressed));
+  }
+
+  @Test
+  public void testDecodeBufferRegion() {
+    byte[] compressed = new SchemaCompressor(true).encode(large());
+    byte[] padded = new byte[compressed.length + 10];
+    System.arraycopy(compressed, 0, padded, 5, compressed.length);
+    ByteBuffer buffer = ByteBuffer.wrap(padded, 5, compressed.length);
+    assertEquals(large(), new SchemaCompressor(false).decode(buffer));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTruncatedContentIsDetected() {
+    byte[] compressed = new SchemaCompressor(true).encode(large());
+    new SchemaCompressor(true).decode(Arrays.copyOf(compressed, compressed.length / 2));
+  }
+}
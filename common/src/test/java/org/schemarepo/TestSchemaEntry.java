@@ -44,6 +44,13 @@ public class TestSchemaEntry {
     Assert.assertEquals(sc, entry.getSchema());
   }
 
+  @Test
+  public void testFingerprintComputedOnce() {
+    SchemaEntry entry = new SchemaEntry("id", "schema");
+    Assert.assertEquals(SchemaFingerprint.of("schema"), entry.getFingerprint());
+    Assert.assertSame(entry.getFingerprint(), entry.getFingerprint());
+  }
+
   @Test
   public void testEqualsAndHashCode() {
     SchemaEntry entry = new SchemaEntry("id", "schema");
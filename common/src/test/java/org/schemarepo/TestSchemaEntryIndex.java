@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class TestSchemaEntryIndex {
+
+  @Test
+  public void testPutIfAbsent() {
+    SchemaEntryIndex index = new SchemaEntryIndex();
+    SchemaEntry first = new SchemaEntry("0", "sc1");
+    assertNull(index.putIfAbsent(first));
+    assertSame(first, index.putIfAbsent(new SchemaEntry("1", "sc1")));
+    assertSame(first, index.get(new String("sc1")));
+    assertNull(index.get("sc2"));
+    index.remove(new SchemaEntry("1", "sc1"));
+    assertSame(first, index.get("sc1"));
+    index.remove(first);
+    assertNull(index.get("sc1"));
+    assertEquals(0, index.size());
+  }
+
+  @Test
+  public void testCollidingFingerprints() {
+    SchemaEntryIndex index = new SchemaEntryIndex();
+    SchemaFingerprint collision = new SchemaFingerprint(42);
+    SchemaEntry sc1 = new SchemaEntry("0", "sc1");
+    SchemaEntry sc2 = new SchemaEntry("1", "sc2");
+    SchemaEntry sc3 = new SchemaEntry("2", "sc3");
+    assertNull(index.putIfAbsent(collision, sc1));
+    // the schemas are compared, not only their fingerprints
+    assertNull(index.get(collision, "sc2"));
+    assertNull(index.putIfAbsent(collision, sc2));
+    assertNull(index.putIfAbsent(collision, sc3));
+    assertSame(sc2, index.putIfAbsent(collision, new SchemaEntry("3", "sc2")));
+    assertSame(sc1, index.get(collision, "sc1"));
+    assertSame(sc2, index.get(collision, "sc2"));
+    assertSame(sc3, index.get(collision, "sc3"));
+    assertEquals(1, index.size());
+  }
+}
@@ -0,0 +1,54 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+public class TestSchemaFingerprint {
+
+  @Test
+  public void testSameAsAvro() {
+    // as computed by org.apache.avro.SchemaNormalization.fingerprint64
+    assertEquals(0xc15d213aa4d7a795L, SchemaFingerprint.fingerprint64(""));
+    assertEquals(0x7275d51a3f395c8fL, SchemaFingerprint.fingerprint64("\"int\""));
+    assertEquals(0x0c53bae9a721536dL, SchemaFingerprint.fingerprint64(
+        "{\"type\":\"record\",\"name\":\"r\",\"doc\":\"\u00e9t\u00e9 \u2603 \ud83d\ude00\",\"fields\":[]}"));
+  }
+
+  @Test
+  public void testUnpairedSurrogatesHashedAsEncoded() {
+    String schema = "\"a\ud83d\"";
+    String encoded = new String(schema.getBytes(Charset.forName("UTF-8")), Charset.forName("UTF-8"));
+    assertEquals(SchemaFingerprint.fingerprint64(encoded), SchemaFingerprint.fingerprint64(schema));
+  }
+
+  @Test
+  public void testValueSemantics() {
+    SchemaFingerprint fingerprint = SchemaFingerprint.of("\"int\"");
+    assertEquals(SchemaFingerprint.of("\"int\""), fingerprint);
+    assertEquals(SchemaFingerprint.of("\"int\"").hashCode(), fingerprint.hashCode());
+    assertFalse(SchemaFingerprint.of("\"long\"").equals(fingerprint));
+    assertEquals("7275d51a3f395c8f", fingerprint.toString());
+  }
+}
@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class TestSchemaInterner {
+
+  @Test
+  public void testIntern() {
+    SchemaInterner interner = new SchemaInterner();
+    String schema = new String("{\"type\": \"string\"}");
+    assertSame(schema, interner.intern(schema));
+    assertSame(schema, interner.intern(new String(schema)));
+    interner.intern("other");
+    assertEquals(2, interner.size());
+    assertNull(interner.intern(null));
+  }
+
+  @Test
+  public void testSchemasSharedAcrossSubjects() throws SchemaValidationException {
+    InMemoryRepository repo = new InMemoryRepository(new ValidatorFactory.Builder().build());
+    for (int i = 0; i < 10; i++) {
+      Subject sub = repo.register("tenant" + i, null);
+      sub.register(new String("{\"type\": \"string\"}"));
+      sub.register("tenant" + i);
+    }
+    assertSame(repo.lookup("tenant0").lookupById("0").getSchema(),
+        repo.lookup("tenant9").lookupById("0").getSchema());
+    assertEquals(11, repo.schemaInterner.size());
+  }
+}
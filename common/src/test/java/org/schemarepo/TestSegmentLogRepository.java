@@ -0,0 +1,222 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestSegmentLogRepository extends AbstractTestPersistentRepository<SegmentLogRepository> {
+  private static final String REPO_PATH = "target/test/TestSegmentLogRepository/";
+
+  @BeforeClass
+  public static void setup() {
+    rmDir(new File(REPO_PATH));
+  }
+
+  @After
+  public void cleanUp() throws Exception {
+    getRepo().close();
+    rmDir(new File(REPO_PATH));
+  }
+
+  @Override
+  protected SegmentLogRepository createRepository() {
+    return new SegmentLogRepository(REPO_PATH, new ValidatorFactory.Builder().build());
+  }
+
+  @Test
+  public void testTornWriteIsTruncated() throws Exception {
+    repo.register("sub1", null).register("sc1");
+    repo.close();
+    File logFile = new File(REPO_PATH, "repository.log");
+    long validLength = logFile.length();
+    // simulate a crash in the middle of appending a record
+    FileOutputStream out = new FileOutputStream(logFile, true);
+    try {
+      out.write(new byte[] { 0, 0, 1, 0, 42, 42 });
+    } finally {
+      out.close();
+    }
+
+    repo = createRepository();
+    assertEquals(validLength, logFile.length());
+    Subject sub1 = repo.lookup("sub1");
+    assertNotNull(sub1);
+    assertEquals("sc1", sub1.lookupById("0").getSchema());
+    assertEquals("1", sub1.register("sc2").getId());
+  }
+
+  @Test
+  public void testDuplicateRecordsAreCompacted() throws Exception {
+    repo.register("sub1", null).register("sc1");
+    repo.register("sub2", null).register("sc2");
+    repo.close();
+    File logFile = new File(REPO_PATH, "repository.log");
+    long validLength = logFile.length();
+    // replay the whole log, as if every write had been retried
+    byte[] content = readAll(logFile);
+    FileOutputStream out = new FileOutputStream(logFile, true);
+    try {
+      out.write(content);
+    } finally {
+      out.close();
+    }
+
+    repo = createRepository();
+    assertEquals(validLength, logFile.length());
+    assertEquals("sc1", repo.lookup("sub1").latest().getSchema());
+    assertEquals("sc2", repo.lookup("sub2").lookupBySchema("sc2").getSchema());
+    assertEquals("1", repo.lookup("sub2").register("sc3").getId());
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testCorruptRecordIsDetected() throws Exception {
+    repo.register("sub1", null).register("sc1");
+    repo.register("sub1", null).register("sc2");
+    repo.close();
+    RandomAccessFile raf = new RandomAccessFile(new File(REPO_PATH, "repository.log"), "rw");
+    try {
+      // flip a byte in the payload of the first record
+      raf.seek(SegmentLog.HEADER_SIZE + 2);
+      int b = raf.read();
+      raf.seek(SegmentLog.HEADER_SIZE + 2);
+      raf.write(b ^ 0xff);
+    } finally {
+      raf.close();
+    }
+    try {
+      repo = createRepository();
+    } finally {
+      // leave a usable repository behind for cleanUp()
+      rmDir(new File(REPO_PATH));
+      repo = createRepository();
+    }
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void testCorruptLengthIsDetected() throws Exception {
+    repo.register("sub1", null).register("sc1");
+    repo.register("sub1", null).register("sc2");
+    repo.close();
+    RandomAccessFile raf = new RandomAccessFile(new File(REPO_PATH, "repository.log"), "rw");
+    try {
+      // make the length of the first record run past the end of the file
+      raf.seek(1);
+      raf.write(0x7f);
+    } finally {
+      raf.close();
+    }
+    try {
+      repo = createRepository();
+    } finally {
+      // leave a usable repository behind for cleanUp()
+      rmDir(new File(REPO_PATH));
+      repo = createRepository();
+    }
+  }
+
+  @Test
+  public void testSchemaStoredOnceAcrossSubjects() throws Exception {
+    repo.register("sub1", null).register("shared");
+    repo.register("sub2", null).register("own");
+    repo.lookup("sub2").register("shared");
+    repo.register("sub3", null).register("shared");
+    assertEquals(1, occurrences(readAll(new File(REPO_PATH, "repository.log")), "shared"));
+
+    Map<String, SchemaEntry> entries = repo.lookupBySchema("shared");
+    assertEquals(3, entries.size());
+    assertEquals("0", entries.get("sub1").getId());
+    assertEquals("1", entries.get("sub2").getId());
+    assertEquals("0", entries.get("sub3").getId());
+    assertTrue(repo.lookupBySchema("other").isEmpty());
+
+    repo.close();
+    repo = createRepository();
+    assertEquals(3, repo.lookupBySchema("shared").size());
+    assertEquals("shared", repo.lookup("sub2").lookupById("1").getSchema());
+    assertEquals("shared", repo.lookup("sub3").latest().getSchema());
+    assertNull(repo.lookup("sub1").lookupBySchema("own"));
+  }
+
+  @Test
+  public void testSingleLogFile() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      Subject sub = repo.register("sub" + i, null);
+      for (int j = 0; j < 10; j++) {
+        sub.register("schema" + j);
+      }
+    }
+    String[] files = new File(REPO_PATH).list();
+    assertEquals(2, files.length);
+    assertTrue(new File(REPO_PATH, "repository.log").isFile());
+  }
+
+  private static int occurrences(byte[] content, String text) throws IOException {
+    byte[] bytes = text.getBytes("UTF-8");
+    int count = 0;
+    for (int i = 0; i + bytes.length <= content.length; i++) {
+      int j = 0;
+      while (j < bytes.length && content[i + j] == bytes[j]) {
+        j++;
+      }
+      if (j == bytes.length) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static byte[] readAll(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      byte[] content = new byte[(int) raf.length()];
+      raf.readFully(content);
+      return content;
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static void rmDir(File dir) {
+    if (!dir.exists() || !dir.isDirectory()) {
+      return;
+    }
+    for (String filename : dir.list()) {
+      File entry = new File(dir, filename);
+      if (entry.isDirectory()) {
+        rmDir(entry);
+      } else {
+        entry.delete();
+      }
+    }
+    dir.delete();
+  }
+}
@@ -44,6 +44,14 @@ public class TestSubjectConfig {
     Assert.assertTrue(validators.contains("valid1"));
     Assert.assertTrue(validators.contains("valid2"));
     Assert.assertTrue(validators.contains("oneMore"));
+    Assert.assertFalse(custom.canonicalize());
+
+    SubjectConfig canonical = new SubjectConfig.Builder()
+      .set(SubjectConfig.CANONICALIZE_KEY, "true")
+      .build();
+    Assert.assertTrue(canonical.canonicalize());
+    Assert.assertEquals(canonical, new SubjectConfig.Builder().set(canonical.asMap()).build());
+    Assert.assertFalse(new SubjectConfig.Builder().set(canonical.asMap()).setCanonicalize(false).build().canonicalize());
   }
 
   @Test
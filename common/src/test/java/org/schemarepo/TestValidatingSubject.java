@@ -18,11 +18,17 @@
 
 package org.schemarepo;
 
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.schemarepo.config.Config;
+import org.schemarepo.validation.AllValidator;
+import org.schemarepo.validation.SchemaEquivalence;
+import org.schemarepo.validation.ValidationStrategy;
 
 public class TestValidatingSubject {
   private static final String ACCEPT = "accept";
@@ -90,4 +96,93 @@ public class TestValidatingSubject {
     reject.registerIfLatest(FOO, null);
   }
 
+  @Test
+  public void testRegisteredSchemaNotValidatedAgain() throws SchemaValidationException {
+    final AtomicInteger validations = new AtomicInteger();
+    InMemoryRepository counting = new InMemoryRepository(new ValidatorFactory.Builder().
+        setValidator(ACCEPT_VALIDATOR, new Validator() {
+          @Override
+          public void validate(String schemaToValidate, Iterable<SchemaEntry> schemasInOrder) {
+            validations.incrementAndGet();
+          }
+        }).build());
+    Subject accept = counting.register(ACCEPT, new SubjectConfig.Builder()
+      .addValidator(ACCEPT_VALIDATOR).build());
+    SchemaEntry foo = accept.register(FOO);
+    Assert.assertEquals(1, validations.get());
+    Assert.assertEquals(foo, accept.register(FOO));
+    Assert.assertEquals(1, validations.get());
+  }
+
+  @Test
+  public void testPairwiseOutcomesRemembered() throws SchemaValidationException {
+    final AtomicInteger validations = new AtomicInteger();
+    ValidationStrategy noBaz = new ValidationStrategy() {
+      @Override
+      public void validate(String toValidate, String existing) throws SchemaValidationException {
+        validations.incrementAndGet();
+        if (toValidate.equals(BAZ)) {
+          throw new SchemaValidationException("no baz after " + existing);
+        }
+      }
+    };
+    Validator all = new AllValidator(Collections.singletonMap("noBaz", noBaz), "noBaz", 100);
+    InMemoryRepository memoizing = new InMemoryRepository(new ValidatorFactory.Builder().
+        setValidator("all", all).build());
+    Subject first = memoizing.register("first", new SubjectConfig.Builder().addValidator("all").build());
+    Subject second = memoizing.register("second", new SubjectConfig.Builder().addValidator("all").build());
+    first.register(FOO);
+    second.register(FOO);
+    first.register(BAR);
+    Assert.assertEquals(1, validations.get());
+    // bar against foo again
+    second.register(BAR);
+    Assert.assertEquals(1, validations.get());
+    for (int i = 0; i < 2; i++) {
+      try {
+        second.register(BAZ);
+        Assert.fail("baz was registered");
+      } catch (SchemaValidationException e) {
+        Assert.assertEquals("no baz after bar", e.getMessage());
+      }
+    }
+    Assert.assertEquals(2, validations.get());
+  }
+
+  @Test
+  public void testCanonicalizedSchemasMapToRegisteredOnes() throws SchemaValidationException {
+    final AtomicInteger validations = new AtomicInteger();
+    InMemoryRepository canonicalizing = new InMemoryRepository(new ValidatorFactory.Builder().
+        setValidator(ACCEPT_VALIDATOR, new Validator() {
+          @Override
+          public void validate(String schemaToValidate, Iterable<SchemaEntry> schemasInOrder) {
+            validations.incrementAndGet();
+          }
+        }).setCanonicalForm(new SchemaEquivalence() {
+          @Override
+          public String equivalenceKey(String schema) {
+            // whitespace aside, unless unknown
+            return schema.startsWith("?") ? null : schema.trim();
+          }
+        }).build());
+    Subject canonical = canonicalizing.register("canonical", new SubjectConfig.Builder()
+      .addValidator(ACCEPT_VALIDATOR).setCanonicalize(true).build());
+    Subject verbatim = canonicalizing.register("verbatim", new SubjectConfig.Builder()
+      .addValidator(ACCEPT_VALIDATOR).build());
+
+    SchemaEntry foo = canonical.register(FOO);
+    SchemaEntry bar = canonical.register(BAR);
+    Assert.assertEquals(foo, canonical.register(" " + FOO + "\n"));
+    Assert.assertEquals(bar, canonical.register(BAR + " "));
+    Assert.assertEquals(2, validations.get());
+    Assert.assertNull(canonical.lookupBySchema(" " + FOO + "\n"));
+    SchemaEntry unknown = canonical.register("?" + FOO);
+    Assert.assertNotEquals(unknown, canonical.register("? " + FOO));
+    Assert.assertEquals(4, validations.get());
+
+    verbatim.register(FOO);
+    Assert.assertNotEquals(verbatim.register(FOO), verbatim.register(" " + FOO));
+    Assert.assertEquals(6, validations.get());
+  }
+
 }
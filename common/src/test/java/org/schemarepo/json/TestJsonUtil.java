@@ -60,6 +60,16 @@ public abstract class TestJsonUtil<UTIL extends JsonUtil> {
     Iterable<SchemaEntry> result = jsonUtil
             .schemasFromJson(jsonUtil.schemasToJson(vals));
     Assert.assertEquals(vals, result);
+
+    // as returned by subjects, not necessarily a collection
+    final ArrayList<SchemaEntry> snapshot = vals;
+    Iterable<SchemaEntry> notCollection = new Iterable<SchemaEntry>() {
+      @Override
+      public Iterator<SchemaEntry> iterator() {
+        return snapshot.iterator();
+      }
+    };
+    Assert.assertEquals(vals, jsonUtil.schemasFromJson(jsonUtil.schemasToJson(notCollection)));
   }
 
   @Test
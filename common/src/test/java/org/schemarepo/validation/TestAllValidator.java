@@ -0,0 +1,156 @@
+package org.schemarepo.validation;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.schemarepo.SchemaEntry;
+import org.schemarepo.SchemaValidationException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestAllValidator {
+    /**
+     * Fails against the schemas starting with "bad", taking the given time
+     * per validation.
+     */
+    private static final class SlowStrategy implements ValidationStrategy {
+        private final long millis;
+        private final AtomicInteger validations = new AtomicInteger();
+
+        private SlowStrategy(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public void validate(String toValidate, String existing) throws SchemaValidationException {
+            validations.incrementAndGet();
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (existing.startsWith("bad")) {
+                throw new SchemaValidationException("cannot follow " + existing);
+            }
+        }
+    }
+
+    private static AllValidator validator(ValidationStrategy strategy, int threads) {
+        return new AllValidator(Collections.singletonMap("slow", strategy), "slow", 0, threads);
+    }
+
+    private static List<SchemaEntry> history(int depth, int... bad) {
+        List<SchemaEntry> entries = new ArrayList<SchemaEntry>();
+        for (int i = 0; i < depth; i++) {
+            entries.add(new SchemaEntry(String.valueOf(depth - 1 - i), "s" + i));
+        }
+        for (int i : bad) {
+            entries.set(i, new SchemaEntry(entries.get(i).getId(), "bad" + i));
+        }
+        return entries;
+    }
+
+    @Test
+    public void testFirstFailureReported() {
+        for (int threads : new int[] { 0, 4 }) {
+            AllValidator all = validator(new SlowStrategy(1), threads);
+            for (int attempt = 0; attempt < 10; attempt++) {
+                try {
+                    all.validate("new", history(16, 3, 9, 12));
+                    Assert.fail("the schema was validated");
+                } catch (SchemaValidationException e) {
+                    Assert.assertEquals("cannot follow bad3", e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testValidationsAfterFailureSkipped() throws SchemaValidationException {
+        SlowStrategy strategy = new SlowStrategy(5);
+        AllValidator all = validator(strategy, 2);
+        try {
+            all.validate("new", history(200, 0));
+            Assert.fail("the schema was validated");
+        } catch (SchemaValidationException e) {
+            Assert.assertEquals("cannot follow bad0", e.getMessage());
+        }
+        Assert.assertTrue(strategy.validations.get() + " validations", strategy.validations.get() < 200);
+        strategy.validations.set(0);
+        all.validate("new", history(200));
+        Assert.assertEquals(200, strategy.validations.get());
+    }
+
+    /**
+     * Validates the schemas the same way whatever follows their '#'.
+     */
+    private static final class DocIgnoringStrategy implements ValidationStrategy, SchemaEquivalence {
+        private final SlowStrategy strategy = new SlowStrategy(0);
+
+        @Override
+        public void validate(String toValidate, String existing) throws SchemaValidationException {
+            strategy.validate(toValidate, existing);
+        }
+
+        @Override
+        public String equivalenceKey(String schema) {
+            return schema.startsWith("unknown") ? null : schema.split("#")[0];
+        }
+    }
+
+    @Test
+    public void testInterchangeableSchemasValidatedOnce() throws SchemaValidationException {
+        DocIgnoringStrategy strategy = new DocIgnoringStrategy();
+        AllValidator all = new AllValidator(Collections.<String, ValidationStrategy>singletonMap("doc", strategy),
+                "doc", 100, 0);
+        List<SchemaEntry> history = new ArrayList<SchemaEntry>();
+        for (int i = 0; i < 10; i++) {
+            history.add(new SchemaEntry(String.valueOf(30 - i), "s#" + i));
+            history.add(new SchemaEntry(String.valueOf(20 - i), "unknown"));
+            history.add(new SchemaEntry(String.valueOf(10 - i), "bad#" + i));
+        }
+        try {
+            all.validate("new", history);
+            Assert.fail("the schema was validated");
+        } catch (SchemaValidationException e) {
+            // as against all the schemas
+            Assert.assertEquals("cannot follow bad#0", e.getMessage());
+        }
+        Assert.assertEquals(3, strategy.strategy.validations.get());
+        all.validate("new", history.subList(0, 2));
+        // remembered
+        Assert.assertEquals(3, strategy.strategy.validations.get());
+    }
+
+    /**
+     * Waits for the given number of validations to be running at once.
+     */
+    private static final class RendezvousStrategy implements ValidationStrategy {
+        private final CountDownLatch running;
+
+        private RendezvousStrategy(int validations) {
+            this.running = new CountDownLatch(validations);
+        }
+
+        @Override
+        public void validate(String toValidate, String existing) throws SchemaValidationException {
+            running.countDown();
+            try {
+                if (!running.await(10, TimeUnit.SECONDS)) {
+                    throw new SchemaValidationException("validated alone against " + existing);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Test
+    public void testValidationsRunConcurrently() throws SchemaValidationException {
+        validator(new RendezvousStrategy(8), 8).validate("new", history(8));
+    }
+}
@@ -0,0 +1,123 @@
+package org.schemarepo.validation;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.schemarepo.SchemaFingerprint;
+import org.schemarepo.SchemaValidationException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestMemoizingValidationStrategy {
+
+    /**
+     * Fails against the schemas starting with "bad", with a cause.
+     */
+    private static final class CountingStrategy implements ValidationStrategy {
+        private final AtomicInteger validations = new AtomicInteger();
+
+        @Override
+        public void validate(String toValidate, String existing) throws SchemaValidationException {
+            validations.incrementAndGet();
+            if (existing.startsWith("bad")) {
+                throw new SchemaValidationException("cannot follow " + existing,
+                        new IllegalStateException(existing));
+            }
+        }
+    }
+
+    @Test
+    public void testOutcomesRemembered() throws SchemaValidationException {
+        CountingStrategy strategy = new CountingStrategy();
+        ValidationStrategy memo = MemoizingValidationStrategy.memoize(strategy, 10);
+        memo.validate("new", "s0");
+        memo.validate("new", "s0");
+        Assert.assertEquals(1, strategy.validations.get());
+        memo.validate(new String("new"), "s1");
+        memo.validate("other", "s0");
+        Assert.assertEquals(3, strategy.validations.get());
+    }
+
+    @Test
+    public void testCollidingExistingSchemaValidatedAgain() throws SchemaValidationException {
+        // the whitespace makes their fingerprints collide
+        String existing = "{\"type\":\"record\",\"name\":\"R\",\"fields\":[]}" + whitespace(
+                "000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000");
+        String colliding = "{\"type\":\"record\",\"name\":\"S\",\"fields\":[]}" + whitespace(
+                "101011110001100001010000111101001100110101000000011110110101011100000000000000000000000000000000");
+        Assert.assertEquals(SchemaFingerprint.of(existing), SchemaFingerprint.of(colliding));
+
+        CountingStrategy strategy = new CountingStrategy();
+        ValidationStrategy memo = MemoizingValidationStrategy.memoize(strategy, 10);
+        memo.validate("new", existing);
+        memo.validate("new", colliding);
+        Assert.assertEquals(2, strategy.validations.get());
+    }
+
+    /**
+     * @return a tab for each '1' and a space for each '0'
+     */
+    private static String whitespace(String bits) {
+        return bits.replace('1', '\t').replace('0', ' ');
+    }
+
+    @Test
+    public void testFailureRethrownWithItsCause() {
+        CountingStrategy strategy = new CountingStrategy();
+        ValidationStrategy memo = MemoizingValidationStrategy.memoize(strategy, 10);
+        SchemaValidationException original = null;
+        try {
+            memo.validate("new", "bad0");
+            Assert.fail("the schema was validated");
+        } catch (SchemaValidationException e) {
+            original = e;
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        try {
+            memo.validate("new", "bad0");
+            Assert.fail("the schema was validated");
+        } catch (SchemaValidationException e) {
+            Assert.assertEquals("cannot follow bad0", e.getMessage());
+            Assert.assertSame(original, e.getCause());
+        }
+        Assert.assertEquals(1, strategy.validations.get());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedForgotten() throws SchemaValidationException {
+        CountingStrategy strategy = new CountingStrategy();
+        MemoizingValidationStrategy memo = (MemoizingValidationStrategy) MemoizingValidationStrategy
+                .memoize(strategy, 2);
+        memo.validate("new", "s0");
+        memo.validate("new", "s1");
+        memo.validate("new", "s0");
+        memo.validate("new", "s2");
+        Assert.assertEquals(2, memo.size());
+        memo.validate("new", "s0");
+        Assert.assertEquals(3, strategy.validations.get());
+        memo.validate("new", "s1");
+        Assert.assertEquals(4, strategy.validations.get());
+    }
+
+    @Test
+    public void testEquivalenceOnlyIfTheWrappedStrategyHasOne() {
+        Assert.assertFalse(MemoizingValidationStrategy.memoize(new CountingStrategy(), 10)
+                instanceof SchemaEquivalence);
+        ValidationStrategy memo = MemoizingValidationStrategy.memoize(new EquivalentStrategy(), 10);
+        Assert.assertTrue(memo instanceof SchemaEquivalence);
+        Assert.assertEquals("s", ((SchemaEquivalence) memo).equivalenceKey("s#doc"));
+    }
+
+    /**
+     * Validates the schemas the same way whatever follows their '#'.
+     */
+    private static final class EquivalentStrategy implements ValidationStrategy, SchemaEquivalence {
+        @Override
+        public void validate(String toValidate, String existing) {
+        }
+
+        @Override
+        public String equivalenceKey(String schema) {
+            return schema.split("#")[0];
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package org.schemarepo.config;
 
 import java.io.PrintStream;
+import java.util.Map;
 import java.util.Properties;
 
 import javax.inject.Named;
@@ -44,6 +45,7 @@ import com.google.inject.name.Names;
 import org.schemarepo.validation.AlwaysFailValidationStrategy;
 import org.schemarepo.validation.CanBeReadValidationStrategy;
 import org.schemarepo.validation.MutualReadValidationStrategy;
+import org.schemarepo.validation.SchemaEquivalence;
 import org.schemarepo.validation.ValidationStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,6 +64,9 @@ import org.slf4j.LoggerFactory;
  * "schema-repo.validator.backwards_compatible=com.foo.BackwardsCompatible"
  * will set a validator named "backwards_compatible" to an instance of the
  * class com.foo.BackwardsCompatible.
+ * <br/>
+ * Schemas are canonicalized, for the subjects configured to, by the
+ * "can-read" validation strategy, if it implements {@link SchemaEquivalence}.
  */
 public class ConfigModule implements Module {
 
@@ -135,7 +140,8 @@ public class ConfigModule implements Module {
 
   @Provides
   @Singleton
-  ValidatorFactory provideValidatorFactory(Injector injector, @Named(Config.DEFAULT_SUBJECT_VALIDATORS) String defaultSubjectValidators) {
+  ValidatorFactory provideValidatorFactory(Injector injector, @Named(Config.DEFAULT_SUBJECT_VALIDATORS) String defaultSubjectValidators,
+      Map<String, ValidationStrategy> strategyMap, @Named(Config.VALIDATION_READ_STRATEGY_CLASS) String readStrategyClassName) {
     ValidatorFactory.Builder builder = new ValidatorFactory.Builder();
     for(String prop : props.stringPropertyNames()) {
       if (prop.startsWith(Config.VALIDATOR_PREFIX)) {
@@ -149,6 +155,11 @@ public class ConfigModule implements Module {
 
     // assign the default subject validators
     builder.setDefaultValidators(RepositoryUtil.commaSplit(defaultSubjectValidators));
+
+    ValidationStrategy readStrategy = strategyMap.get(readStrategyClassName);
+    if (readStrategy instanceof SchemaEquivalence) {
+      builder.setCanonicalForm((SchemaEquivalence) readStrategy);
+    }
     return builder.build();
   }
 
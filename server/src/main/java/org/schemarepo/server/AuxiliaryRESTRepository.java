@@ -69,7 +69,7 @@ public class AuxiliaryRESTRepository extends BaseRESTRepository {
     String text = "OK";
     if (repo instanceof BaseRepository) {
       try {
-        ((BaseRepository)repo).isValid();
+        ((BaseRepository)repo).isReady();
       } catch (IllegalStateException e) {
         status = Status.SERVICE_UNAVAILABLE;
         text = e.getMessage();
@@ -22,6 +22,7 @@ import java.util.Properties;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.schemarepo.BoundedInMemoryCache;
 import org.schemarepo.InMemoryRepository;
 import org.schemarepo.Repository;
 import org.schemarepo.SchemaEntry;
@@ -54,6 +55,22 @@ public class TestConfigModule {
     Assert.assertTrue(threw);
   }
 
+  @Test
+  public void testBoundedCache() throws SchemaValidationException {
+    Properties props = new Properties();
+    props.setProperty(Config.REPO_CLASS, InMemoryRepository.class.getName());
+    props.setProperty(Config.REPO_CACHE, BoundedInMemoryCache.class.getName());
+    props.setProperty(Config.CACHE_MAX_ENTRIES, "2");
+    Injector injector = Guice.createInjector(new ConfigModule(props));
+    Repository repo = injector.getInstance(Repository.class);
+    Subject sub = repo.register("bounded", null);
+    for (int i = 0; i < 10; i++) {
+      sub.register("sc" + i);
+    }
+    Assert.assertEquals("sc0", sub.lookupById("0").getSchema());
+    Assert.assertEquals("9", sub.lookupBySchema("sc9").getId());
+  }
+
   @Test
   public void testPrintDefaults() {
     ConfigModule.printDefaults(System.out);
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.zookeeper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Bloom filter of 128-bit hashes, growing with the number of elements added
+ * to it. <br/>
+ * <br/>
+ * The filter is a series of stages, each one twice as large as the previous
+ * one and with half its false positive probability, so that the overall false
+ * positive probability stays under twice that of the first stage however many
+ * elements are added. Elements are added to the last stage, and a new one is
+ * started when it is full. The bits probed for an element are derived from
+ * its hash by double hashing. <br/>
+ * <br/>
+ * Not thread-safe.
+ */
+final class BloomFilter {
+
+  private static final double LN2 = Math.log(2);
+
+  private final List<Stage> stages = new ArrayList<Stage>();
+
+  /**
+   * @param initialCapacity the number of elements of the first stage
+   * @param falsePositiveProbability the false positive probability of the
+   *          first stage
+   */
+  BloomFilter(int initialCapacity, double falsePositiveProbability) {
+    stages.add(new Stage(initialCapacity, falsePositiveProbability));
+  }
+
+  void add(long hash1, long hash2) {
+    Stage last = stages.get(stages.size() - 1);
+    if (last.count >= last.capacity) {
+      last = new Stage(last.capacity * 2, last.falsePositiveProbability / 2);
+      stages.add(last);
+    }
+    last.add(hash1, hash2);
+  }
+
+  /**
+   * @return false if the element was definitely not added to the filter
+   */
+  boolean mightContain(long hash1, long hash2) {
+    for (Stage stage : stages) {
+      if (stage.mightContain(hash1, hash2)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static final class Stage {
+    private final int capacity;
+    private final double falsePositiveProbability;
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private int count;
+
+    private Stage(int capacity, double falsePositiveProbability) {
+      this.capacity = capacity;
+      this.falsePositiveProbability = falsePositiveProbability;
+      long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveProbability) / (LN2 * LN2));
+      this.bits = new long[(int) ((optimalBits + 63) / 64)];
+      this.bitCount = 64L * bits.length;
+      this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * LN2));
+    }
+
+    private void add(long hash1, long hash2) {
+      long combined = hash1;
+      for (int i = 0; i < hashCount; i++) {
+        long bit = (combined & Long.MAX_VALUE) % bitCount;
+        bits[(int) (bit >>> 6)] |= 1L << bit;
+        combined += hash2;
+      }
+      count++;
+    }
+
+    private boolean mightContain(long hash1, long hash2) {
+      long combined = hash1;
+      for (int i = 0; i < hashCount; i++) {
+        long bit = (combined & Long.MAX_VALUE) % bitCount;
+        if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+          return false;
+        }
+        combined += hash2;
+      }
+      return true;
+    }
+  }
+
+}
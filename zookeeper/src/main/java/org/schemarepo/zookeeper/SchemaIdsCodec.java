@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.zookeeper;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Encodes the content of a subject's schema_ids znode. <br/>
+ * <br/>
+ * The binary format is a zero byte, a format version byte, the number of ids
+ * as a varint, then each id as the zig-zag varint of its difference with the
+ * previous one (the first one with 0). Since ids grow by one, most of them
+ * take a single byte. <br/>
+ * <br/>
+ * The original format, one decimal id per line, is still decoded: it can never
+ * start with a zero byte. Subjects are converted to the binary format the next
+ * time they are written to.
+ */
+final class SchemaIdsCodec {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SchemaIdsCodec.class);
+
+  private static final byte MAGIC = 0;
+  private static final byte VERSION = 1;
+
+  private SchemaIdsCodec() {
+  }
+
+  static byte[] encode(List<Integer> ids) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(3 + ids.size());
+    out.write(MAGIC);
+    out.write(VERSION);
+    writeVarint(out, ids.size());
+    int previous = 0;
+    for (Integer id : ids) {
+      int delta = id - previous;
+      writeVarint(out, (delta << 1) ^ (delta >> 31));
+      previous = id;
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * @param content the content of the znode, in either format
+   * @param path the path of the znode, for error reporting
+   */
+  static List<Integer> decode(byte[] content, String path) {
+    if (content == null || content.length == 0) {
+      return new ArrayList<Integer>();
+    }
+    if (content[0] == MAGIC) {
+      return decodeBinary(content, path);
+    }
+    return decodeText(content, path);
+  }
+
+  private static List<Integer> decodeBinary(byte[] content, String path) {
+    if (content.length < 2 || content[1] != VERSION) {
+      throw new IllegalStateException("Unsupported schema ids format in " + path);
+    }
+    int[] position = { 2 };
+    int count = readVarint(content, position, path);
+    List<Integer> ids = new ArrayList<Integer>(count);
+    int previous = 0;
+    for (int i = 0; i < count; i++) {
+      int zigzag = readVarint(content, position, path);
+      previous += (zigzag >>> 1) ^ -(zigzag & 1);
+      ids.add(previous);
+    }
+    return ids;
+  }
+
+  private static List<Integer> decodeText(byte[] content, String path) {
+    List<Integer> ids = new ArrayList<Integer>();
+    int lineStart = 0;
+    for (int i = 0; i <= content.length; i++) {
+      if (i == content.length || content[i] == '\n') {
+        addTextId(ids, content, lineStart, i, path);
+        lineStart = i + 1;
+      }
+    }
+    return ids;
+  }
+
+  private static void addTextId(List<Integer> ids, byte[] content, int start, int end, String path) {
+    if (end > start && content[end - 1] == '\r') {
+      end--;
+    }
+    if (end == start) {
+      return;
+    }
+    long id = 0;
+    for (int i = start; i < end; i++) {
+      int digit = content[i] - '0';
+      if (digit < 0 || digit > 9 || id > Integer.MAX_VALUE) {
+        LOGGER.error("Got an invalid ID ({}) in {} !", new String(content, start, end - start), path);
+        return;
+      }
+      id = id * 10 + digit;
+    }
+    if (id > Integer.MAX_VALUE) {
+      LOGGER.error("Got an invalid ID ({}) in {} !", new String(content, start, end - start), path);
+      return;
+    }
+    ids.add((int) id);
+  }
+
+  private static void writeVarint(ByteArrayOutputStream out, int value) {
+    while ((value & ~0x7f) != 0) {
+      out.write((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  private static int readVarint(byte[] content, int[] position, String path) {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      if (position[0] >= content.length) {
+        throw new IllegalStateException("Truncated schema ids in " + path);
+      }
+      byte b = content[position[0]++];
+      value |= (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IllegalStateException("Corrupt schema ids in " + path);
+  }
+}
@@ -19,17 +19,31 @@
 package org.schemarepo.zookeeper;
 
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Properties;
-import java.util.Scanner;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -37,18 +51,38 @@ import javax.inject.Named;
 import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
+import org.apache.curator.framework.api.transaction.CuratorTransactionResult;
+import org.apache.curator.framework.api.transaction.OperationType;
 import org.apache.curator.framework.imps.CuratorFrameworkState;
-import org.apache.curator.framework.recipes.locks.InterProcessSemaphoreMutex;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.NodeCache;
+import org.apache.curator.framework.recipes.cache.NodeCacheListener;
+import org.apache.curator.framework.recipes.cache.PathChildrenCache;
+import org.apache.curator.framework.recipes.leader.LeaderLatch;
+import org.apache.curator.framework.recipes.leader.Participant;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.curator.framework.state.ConnectionStateListener;
 import org.apache.curator.retry.RetryNTimes;
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.data.Stat;
 import org.schemarepo.AbstractBackendRepository;
 import org.schemarepo.RepositoryUtil;
+import org.schemarepo.SchemaCompressor;
 import org.schemarepo.SchemaEntry;
+import org.schemarepo.SchemaEntryIndex;
 import org.schemarepo.SchemaValidationException;
 import org.schemarepo.Subject;
 import org.schemarepo.SubjectConfig;
 import org.schemarepo.ValidatorFactory;
+import org.schemarepo.client.RESTRepositoryClient;
+import org.schemarepo.client.RepositoryClient;
 import org.schemarepo.config.Config;
+import org.schemarepo.json.JsonUtil;
 
 /**
  * This {@link org.schemarepo.Repository} implementation stores its state using Zookeeper.
@@ -59,18 +93,96 @@ import org.schemarepo.config.Config;
  * <p/>
  * This Repository is meant to be highly available, meaning that multiple instances
  * can share the same Zookeeper ensemble and synchronize their state through it.
+ * <p/>
+ * Reads are served from a local mirror of the ZK content, kept up to date by
+ * watches: the list of subjects, each subject's schema ids and config, and the
+ * schemas, which never change once registered. Changes made by other instances
+ * are therefore seen as soon as their watch notification arrives; anything not
+ * found in the mirror is read from ZK. Each subject also keeps a Bloom filter
+ * of its mirrored schemas, so that looking up a schema which is not registered
+ * usually does not read ZK at all: the watch reports the schemas registered
+ * elsewhere, and the schema ids are only read again once the connection was
+ * interrupted, when a notification may have been missed.
+ * <p/>
+ * With the schema-repo.zookeeper.leader-election configuration property set,
+ * the instances elect a leader which performs all the writes: the others
+ * forward subject and schema registrations to its REST API, found at the
+ * schema-repo.zookeeper.advertised-url it was configured with. The schemas
+ * forwarded are validated by the leader only, against its own view of the
+ * subject.
+ * <p/>
+ * With the schema-repo.zookeeper.compress-schemas configuration property set,
+ * new schema znodes are written compressed, see {@link SchemaCompressor}.
  */
 public class ZooKeeperRepository extends AbstractBackendRepository {
 
   // Constants
+  // left behind by the lock that older versions took around every write
   private static final String LOCKFILE = ".repo.lock";
+  private static final String LEADER_LATCH = ".leader";
   private static final String SUBJECT_PROPERTIES = "subject.properties";
   private static final String SCHEMA_IDS = "schema_ids";
   private static final String SCHEMA_POSTFIX = ".schema";
+  // Index of a subject's schemas: one child per schema, named after its SHA-256
+  // and holding its id
+  private static final String BY_HASH = "by-hash";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int BLOOM_FILTER_INITIAL_CAPACITY = 64;
+  private static final double BLOOM_FILTER_FALSE_POSITIVE_PROBABILITY = 0.01;
+  // how many of the schemas of a subject are read at once as its entries are iterated
+  private static final int PREFETCH_BATCH_SIZE = 64;
 
   // Curator implementation details
   CuratorFramework zkClient;
-  InterProcessSemaphoreMutex zkLock;
+  // how long to wait for a batch of background reads before falling back to synchronous ones
+  private final int batchReadTimeout;
+
+  // the watch-driven caches backing the local mirror, closed along with the repository
+  private PathChildrenCache subjectsMirror;
+  private final List<Closeable> mirrors = new CopyOnWriteArrayList<Closeable>();
+
+  // null unless leader election is enabled
+  private LeaderLatch leaderLatch;
+  private final JsonUtil jsonUtil;
+  // the client of the REST API of the current leader, by URL; the ones of the
+  // former leaders are closed once the leadership changes
+  private final Map<String, RepositoryClient> leaderClients = new ConcurrentHashMap<String, RepositoryClient>();
+
+  // the codec of the schema znodes
+  private final SchemaCompressor compressor;
+
+  // bumped on every change of the connection state: a watch may have missed a
+  // notification while the connection was down, so the mirrors known to be
+  // current as of an older epoch are read again before they are trusted
+  private final AtomicInteger connectionEpoch = new AtomicInteger();
+
+  private final AtomicLong bloomFilterNegatives = new AtomicLong();
+  private final AtomicLong bloomFilterFalsePositives = new AtomicLong();
+
+  public ZooKeeperRepository(String zkEnsemble,
+                             String zkPathPrefix,
+                             Integer zkSessionTimeout,
+                             Integer zkConnectionTimeout,
+                             Integer curatorSleepTimeBetweenRetries,
+                             Integer curatorNumberOfRetries,
+                             ValidatorFactory validators) {
+    this(zkEnsemble, zkPathPrefix, zkSessionTimeout, zkConnectionTimeout, curatorSleepTimeBetweenRetries,
+        curatorNumberOfRetries, false, null, null, validators);
+  }
+
+  public ZooKeeperRepository(String zkEnsemble,
+                             String zkPathPrefix,
+                             Integer zkSessionTimeout,
+                             Integer zkConnectionTimeout,
+                             Integer curatorSleepTimeBetweenRetries,
+                             Integer curatorNumberOfRetries,
+                             Boolean leaderElection,
+                             String advertisedUrl,
+                             JsonUtil jsonUtil,
+                             ValidatorFactory validators) {
+    this(zkEnsemble, zkPathPrefix, zkSessionTimeout, zkConnectionTimeout, curatorSleepTimeBetweenRetries,
+        curatorNumberOfRetries, leaderElection, advertisedUrl, false, jsonUtil, validators);
+  }
 
   @Inject
   public ZooKeeperRepository(@Named(Config.ZK_ENSEMBLE) String zkEnsemble,
@@ -79,14 +191,26 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
                              @Named(Config.ZK_CONNECTION_TIMEOUT) Integer zkConnectionTimeout,
                              @Named(Config.ZK_CURATOR_SLEEP_TIME_BETWEEN_RETRIES) Integer curatorSleepTimeBetweenRetries,
                              @Named(Config.ZK_CURATOR_NUMBER_OF_RETRIES) Integer curatorNumberOfRetries,
+                             @Named(Config.ZK_LEADER_ELECTION) Boolean leaderElection,
+                             @Named(Config.ZK_ADVERTISED_URL) String advertisedUrl,
+                             @Named(Config.ZK_COMPRESS_SCHEMAS) Boolean compressSchemas,
+                             JsonUtil jsonUtil,
                              ValidatorFactory validators)
   {
     super(validators);
+    this.compressor = new SchemaCompressor(compressSchemas != null && compressSchemas);
+    this.batchReadTimeout = zkSessionTimeout;
+    this.jsonUtil = jsonUtil;
 
     if (zkEnsemble == null || zkEnsemble.isEmpty()) {
       logger.error("The '{}' config is missing. Exiting.", Config.ZK_ENSEMBLE);
       System.exit(1);
     }
+    boolean electLeader = leaderElection != null && leaderElection;
+    if (electLeader && (advertisedUrl == null || advertisedUrl.isEmpty())) {
+      logger.error("The '{}' config is required by '{}'. Exiting.", Config.ZK_ADVERTISED_URL, Config.ZK_LEADER_ELECTION);
+      System.exit(1);
+    }
 
     logger.info("Starting ZookeeperRepository with the following parameters:\n" +
             Config.ZK_ENSEMBLE + ": " + zkEnsemble + "\n" +
@@ -94,7 +218,9 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
             Config.ZK_SESSION_TIMEOUT + ": " + zkSessionTimeout + "\n" +
             Config.ZK_CONNECTION_TIMEOUT + ": " + zkConnectionTimeout + "\n" +
             Config.ZK_CURATOR_SLEEP_TIME_BETWEEN_RETRIES + ": " + curatorSleepTimeBetweenRetries + "\n" +
-            Config.ZK_CURATOR_NUMBER_OF_RETRIES + ": " + curatorNumberOfRetries);
+            Config.ZK_CURATOR_NUMBER_OF_RETRIES + ": " + curatorNumberOfRetries + "\n" +
+            Config.ZK_LEADER_ELECTION + ": " + electLeader + "\n" +
+            Config.ZK_COMPRESS_SCHEMAS + ": " + compressor.isEnabled());
 
     RetryPolicy retryPolicy = new RetryNTimes(curatorSleepTimeBetweenRetries, curatorNumberOfRetries);
     CuratorFrameworkFactory.Builder cffBuilder = CuratorFrameworkFactory.builder()
@@ -126,11 +252,24 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
     // we'll use for the rest of the ZK Repository's runtime.
     String zkPathPrefixWithoutLeadingSlash = zkPathPrefix.substring(1);
     zkClient = cffBuilder.namespace(zkPathPrefixWithoutLeadingSlash).build();
+    zkClient.getConnectionStateListenable().addListener(new ConnectionStateListener() {
+      @Override
+      public void stateChanged(CuratorFramework client, ConnectionState newState) {
+        connectionEpoch.incrementAndGet();
+      }
+    });
     zkClient.start();
 
     try {
       zkClient.blockUntilConnected();
-      zkLock = new InterProcessSemaphoreMutex(zkClient, LOCKFILE);
+      // a cache of the namespace root itself cannot be built through the namespaced client
+      subjectsMirror = new PathChildrenCache(zkClient.usingNamespace(null), "/" + zkClient.getNamespace(), false);
+      subjectsMirror.start(PathChildrenCache.StartMode.BUILD_INITIAL_CACHE);
+      mirrors.add(subjectsMirror);
+      if (electLeader) {
+        leaderLatch = new LeaderLatch(zkClient, "/" + LEADER_LATCH, advertisedUrl);
+        leaderLatch.start();
+      }
       logger.info("ZooKeeperRepository startup finished!");
     } catch (Exception e) {
       logger.error("There was an unrecoverable exception during the ZooKeeperRepository startup. Exiting.", e);
@@ -138,21 +277,69 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
     }
   }
 
-  private void acquireLock() {
+  /**
+   * @return a client of the leader's REST API, or null if this instance is to
+   *         perform writes itself
+   */
+  private RepositoryClient getLeader() {
+    if (leaderLatch == null || leaderLatch.hasLeadership()) {
+      return null;
+    }
+    Participant leader;
     try {
-      zkLock.acquire();
+      leader = leaderLatch.getLeader();
     } catch (Exception e) {
-      logger.error("An exception occurred while trying to get the ZK lock!", e);
-      throw new RuntimeException(e);
+      throw new RuntimeException("An exception occurred while accessing ZK!", e);
+    }
+    if (!leader.isLeader() || leader.getId().isEmpty()) {
+      // Versioned writes keep it safe to write without a leader
+      logger.warn("No leader is elected, performing the write locally");
+      return null;
     }
+    RepositoryClient client = leaderClients.get(leader.getId());
+    if (client == null) {
+      synchronized (leaderClients) {
+        client = leaderClients.get(leader.getId());
+        if (client == null) {
+          // the leadership changed, the clients of the former leaders are of no more use
+          closeLeaderClients();
+          client = new RESTRepositoryClient(leader.getId(), jsonUtil, false);
+          leaderClients.put(leader.getId(), client);
+        }
+      }
+    }
+    return client;
   }
 
-  private void releaseLock() {
+  // called holding the lock of leaderClients
+  private void closeLeaderClients() {
+    for (RepositoryClient client : leaderClients.values()) {
+      CloseableUtils.closeQuietly(client);
+    }
+    leaderClients.clear();
+  }
+
+  /**
+   * Wait until the ZK server we are connected to has caught up with the ZK
+   * leader, so that the writes made through other clients, such as the ones
+   * the elected leader made on our behalf, are visible to us.
+   */
+  private void syncWithLeader(String path) {
+    final CountDownLatch synced = new CountDownLatch(1);
     try {
-      zkLock.release();
+      zkClient.sync().inBackground(new BackgroundCallback() {
+        @Override
+        public void processResult(CuratorFramework client, CuratorEvent event) {
+          synced.countDown();
+        }
+      }).forPath(path);
+      if (!synced.await(batchReadTimeout, TimeUnit.MILLISECONDS)) {
+        logger.warn("Timed out syncing {} with the leader", path);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     } catch (Exception e) {
-      logger.error("An exception occurred while trying to release the ZK lock!", e);
-      throw new RuntimeException(e);
+      throw new RuntimeException("An exception occurred while accessing ZK!", e);
     }
   }
 
@@ -160,44 +347,63 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
     return new ZooKeeperSubject(subjectName);
   }
 
+  @Override
+  protected void subjectInstanceCached(final Subject subject) {
+    NodeCache mirror = ((ZooKeeperSubject) subject).schemaIdsMirror;
+    mirrors.add(mirror);
+    if (closed) {
+      // close() may have missed it
+      CloseableUtils.closeQuietly(mirror);
+    }
+  }
+
+  @Override
+  protected void subjectInstanceDiscarded(final Subject subject) {
+    CloseableUtils.closeQuietly(((ZooKeeperSubject) subject).schemaIdsMirror);
+  }
+
   @Override
   protected void registerSubjectInBackend(final String subjectName, final SubjectConfig config) {
-    // If the Subject is not in the local cache, we acquire the lock to create it
-    acquireLock();
+    RepositoryClient leader = getLeader();
+    if (leader != null) {
+      leader.register(subjectName, config);
+      syncWithLeader(subjectName);
+      return;
+    }
     try {
-      zkClient.create().forPath(subjectName);
-      // N.B.: There is a possibility that the Subject was already created by
-      // another repository instance. If the create operation above didn't throw,
-      // then we need to initialize the Subject.
-
-      // Create schema IDs file
-      zkClient.create().forPath(subjectName + "/" + SCHEMA_IDS);
-      // Create properties file
       Properties props = new Properties();
       props.putAll(RepositoryUtil.safeConfig(config).asMap());
       StringWriter sw = new StringWriter();
       props.store(sw, "Schema Repository Subject Properties");
       byte[] content = sw.toString().getBytes();
-      zkClient.create().forPath(subjectName + "/" + SUBJECT_PROPERTIES, content);
-
+      // The Subject, its schema IDs file and its properties file are created
+      // in one ZK transaction, so that no other instance can see it half-made
+      zkClient.inTransaction().
+              create().forPath(subjectName).
+              and().
+              create().forPath(subjectName + "/" + SCHEMA_IDS).
+              and().
+              create().forPath(subjectName + "/" + SUBJECT_PROPERTIES, content).
+              and().
+              create().forPath(subjectName + "/" + BY_HASH).
+              and().commit();
     } catch (KeeperException.NodeExistsException e) {
       // The Subject was already created by another repository instance, we will
       // just fetch it, below, instead of creating a new one.
     } catch (Exception e) {
       logger.error("An exception occurred while accessing ZK!", e);
       throw new RuntimeException(e);
-    } finally {
-      releaseLock();
     }
   }
 
   @Override
   protected boolean checkSubjectExistsInBackend(final String subjectName) {
     // If not in cache, another instance may have created it
+    if (subjectsMirror.getCurrentData(ZKPaths.makePath(zkClient.getNamespace(), subjectName)) != null) {
+      return true;
+    }
     try {
-      // TODO: Allow this behavior to be disabled once we have async updating
-      // of the cache via ZK Observers... This would protect ZK from getting
-      // hammered too much at the expense of slightly stale data.
+      // the watch may not have told us about it yet
       return zkClient.checkExists().forPath(subjectName) != null;
     } catch (Exception e) {
       logger.error("An exception occurred while accessing ZK!", e);
@@ -209,21 +415,13 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
   public synchronized Iterable<Subject> subjects() {
     isValid();
 
-    try {
-      // TODO: Allow this behavior to be disabled once we have async updating
-      // of the cache via ZK Observers... This would protect ZK from getting
-      // hammered too much at the expense of slightly stale data.
-      Iterable<String> subjectsInZk = zkClient.getChildren().forPath("");
-      for (String subjectInZk : subjectsInZk) {
-        if (!subjectInZk.equals(LOCKFILE)) {
-          if (subjectCache.lookup(subjectInZk) == null) {
-            getAndCacheSubject(subjectInZk);
-          }
+    for (ChildData child : subjectsMirror.getCurrentData()) {
+      String subjectInZk = ZKPaths.getNodeFromPath(child.getPath());
+      if (!subjectInZk.equals(LOCKFILE) && !subjectInZk.equals(LEADER_LATCH)) {
+        if (subjectCache.lookup(subjectInZk) == null) {
+          getAndCacheSubject(subjectInZk);
         }
       }
-    } catch (Exception e) {
-      logger.error("An exception occurred while accessing ZK!", e);
-      throw new RuntimeException(e);
     }
 
     return super.subjects();
@@ -238,21 +436,19 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
    */
   @Override
   public void close() throws IOException {
-    Integer waitTime = 100;
-    while (true) {
-      if (zkLock.isAcquiredInThisProcess()) {
-        try {
-          logger.info("ZooKeeperRepository's close() called while lock is acquired. " +
-                  "Waiting " + waitTime + " ms before trying again.");
-          wait(waitTime);
-        } catch (InterruptedException e) {
-          logger.warn("Interrupted while waiting", e);
-        }
-      } else {
-        // TODO: Make sure the race condition between the if condition and the close is harmless...
-        zkClient.close();
-        break;
-      }
+    if (leaderLatch != null) {
+      CloseableUtils.closeQuietly(leaderLatch);
+    }
+    synchronized (leaderClients) {
+      closeLeaderClients();
+    }
+    for (Closeable mirror : mirrors) {
+      CloseableUtils.closeQuietly(mirror);
+    }
+    zkClient.close();
+    if (compressor.isEnabled()) {
+      logger.info("Compression saved {} bytes out of {} written to schema znodes",
+          compressor.getBytesSaved(), compressor.getRawBytes());
     }
     closed = true;
     super.close();
@@ -270,12 +466,107 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
   protected Map<String, String> exposeConfiguration() {
     final Map<String, String> properties = new LinkedHashMap<String, String>(super.exposeConfiguration());
     properties.put(Config.ZK_ENSEMBLE, zkClient.getZookeeperClient().getCurrentConnectionString());
+    properties.put(Config.ZK_COMPRESS_SCHEMAS, String.valueOf(compressor.isEnabled()));
     return properties;
   }
 
+  /**
+   * @return the codec of the schema znodes, which counts the bytes it saved
+   */
+  public SchemaCompressor getSchemaCompressor() {
+    return compressor;
+  }
+
+
+  /**
+   * @return the number of lookups of unregistered schemas answered by a
+   *         subject's Bloom filter, without reading ZK
+   */
+  public long getBloomFilterNegatives() {
+    return bloomFilterNegatives.get();
+  }
+
+  /**
+   * @return the number of lookups of unregistered schemas that a subject's
+   *         Bloom filter could not rule out
+   */
+  public long getBloomFilterFalsePositives() {
+    return bloomFilterFalsePositives.get();
+  }
+
+  /**
+   * @return the observed false positive rate of the subjects' Bloom filters
+   */
+  public double getBloomFilterFalsePositiveRate() {
+    long falsePositives = bloomFilterFalsePositives.get();
+    long total = falsePositives + bloomFilterNegatives.get();
+    return total == 0 ? 0 : (double) falsePositives / total;
+  }
+
+  private static byte[] sha256(String schema) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+    return digest.digest(schema.getBytes(UTF_8));
+  }
+
+  private static long hashPart(byte[] hash, int index) {
+    return ByteBuffer.wrap(hash).getLong(8 * index);
+  }
+
+  private static String hex(byte[] hash) {
+    StringBuilder sb = new StringBuilder();
+    for (byte b : hash) {
+      sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return sb.toString();
+  }
+
+  /**
+   * The content of a schema_ids znode, along with the version of the znode it
+   * was read from. A new instance replaces it whenever the znode changes.
+   */
+  private static class SchemaIds {
+    private final List<Integer> ids;
+    private final int version;
+    private final int latestId;
+    // the entry for latestId, set on first use
+    private volatile SchemaEntry latest;
+
+    private SchemaIds(List<Integer> ids, int version) {
+      this.ids = Collections.unmodifiableList(ids);
+      this.version = version;
+      int lastId = -1;
+      for (Integer id : ids) {
+        if (id > lastId) {
+          lastId = id;
+        }
+      }
+      this.latestId = lastId;
+    }
+  }
 
   private class ZooKeeperSubject extends Subject {
-    //private final SubjectConfig config;
+    // subject.properties is only written when the subject is created
+    private final SubjectConfig config;
+    private final NodeCache schemaIdsMirror;
+    private final AtomicReference<SchemaIds> schemaIds = new AtomicReference<SchemaIds>();
+    // schemas never change once registered, so they are kept for good
+    private final Map<String, String> schemas = new ConcurrentHashMap<String, String>();
+    // the entries of the schemas found through the hash index, or registered here
+    private final SchemaEntryIndex entriesBySchema = new SchemaEntryIndex();
+    // the hashes of the schemas of the first bloomFilterCoverage mirrored ids,
+    // ruling out most lookups of schemas which are not registered
+    private final BloomFilter bloomFilter = new BloomFilter(BLOOM_FILTER_INITIAL_CAPACITY,
+        BLOOM_FILTER_FALSE_POSITIVE_PROBABILITY);
+    // guarded by bloomFilter
+    private int bloomFilterCoverage;
+    // the connection epoch as of which the mirrored schema ids are current,
+    // the watch of the mirror reporting any change since
+    private volatile int mirrorEpoch = -1;
 
     /**
      * A {@link org.schemarepo.Subject} has a name. The name must not be null or empty, and
@@ -285,10 +576,31 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
     protected ZooKeeperSubject(String subjectName) {
       super(subjectName);
 
+      // watched once started, and only closed with the repository if this
+      // instance is the one cached for the subject
+      schemaIdsMirror = new NodeCache(zkClient, getSchemaIdsFilePath());
       try {
         if (zkClient.checkExists().forPath(subjectName) == null) {
           throw new RuntimeException("The Subject does not exist in ZK!");
         }
+        Properties props = new Properties();
+        byte[] rawProperties = zkClient.getData().forPath(getConfigFilePath());
+        props.load(new ByteArrayInputStream(rawProperties));
+        config = RepositoryUtil.configFromProperties(props);
+
+        schemaIdsMirror.getListenable().addListener(new NodeCacheListener() {
+          @Override
+          public void nodeChanged() {
+            mirrorSchemaIds(schemaIdsMirror.getCurrentData());
+          }
+        });
+        int epoch = connectionEpoch.get();
+        schemaIdsMirror.start(true);
+        mirrorSchemaIds(schemaIdsMirror.getCurrentData());
+        if (schemaIds.get() == null) {
+          fetchSchemaIds();
+        }
+        mirrorEpoch = epoch;
           Set<String> schemaFileNames = getSchemaFiles();
           Set<Integer> foundIds = new HashSet<Integer>();
           for (Integer id : getSchemaIds()) {
@@ -305,10 +617,15 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
                     + " that are not referenced in the " + SCHEMA_IDS + " file: "
                     + schemaFileNames.toString());
           }
+          if (zkClient.checkExists().forPath(getByHashPath()) == null) {
+            indexSchemasByHash();
+          }
       } catch (IOException e) {
+        CloseableUtils.closeQuietly(schemaIdsMirror);
         throw new RuntimeException("An IOException occurred while reading the properties at: " +
                 getConfigFilePath(), e);
       } catch (Exception e) {
+        CloseableUtils.closeQuietly(schemaIdsMirror);
         throw new RuntimeException("An exception occurred while accessing ZK!", e);
       }
     }
@@ -337,11 +654,45 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
       return getSubjectPath() + "/" + getSchemaFileName(schemaId);
     }
 
+    private String getByHashPath() {
+      return getSubjectPath() + "/" + BY_HASH;
+    }
+
+    private String getSchemaHashPath(String schema) {
+      return getSchemaHashPath(sha256(schema));
+    }
+
+    private String getSchemaHashPath(byte[] hash) {
+      return getByHashPath() + "/" + hex(hash);
+    }
+
+    /**
+     * Build the hash index of a subject created by a version of this
+     * repository which did not maintain it. The whole index is created in one
+     * transaction, so that it is either complete or missing.
+     */
+    private void indexSchemasByHash() throws Exception {
+      logger.info("Indexing the schemas of {} by hash", getName());
+      CuratorTransactionFinal transaction = zkClient.inTransaction().create().forPath(getByHashPath()).and();
+      Set<String> indexed = new HashSet<String>();
+      prefetchSchemas(getSchemaIds());
+      for (Integer id : getSchemaIds()) {
+        String idStr = id.toString();
+        String schema = readSchemaForId(idStr);
+        // should the same schema appear under several ids, the oldest one wins
+        if (schema != null && indexed.add(schema)) {
+          transaction = transaction.create().forPath(getSchemaHashPath(schema), idStr.getBytes(UTF_8)).and();
+        }
+      }
+      try {
+        transaction.commit();
+      } catch (KeeperException.NodeExistsException e) {
+        // Another repository instance indexed the subject at the same time
+      }
+    }
+
     private Set<String> getSchemaFiles() {
       try {
-        // TODO: Allow this behavior to be disabled once we have async updating
-        // of the cache via ZK Observers... This would protect ZK from getting
-        // hammered too much at the expense of slightly stale data.
         List<String> filesInSubject = zkClient.getChildren().forPath(getSubjectPath());
         Set<String> schemaFiles = new HashSet<String>();
         for (String fileName: filesInSubject) {
@@ -355,60 +706,68 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
       }
     }
 
-    // schema ids from the schema id file, in order from oldest to newest
-    private List<Integer> getSchemaIds(){
-      // TODO: Make IDs String across the board (not Integer),
-      // TODO: Add pluggable ID generation schemes
-      try {
-        // TODO: Allow this behavior to be disabled once we have async updating
-        // of the cache via ZK Observers... This would protect ZK from getting
-        // hammered too much at the expense of slightly stale data.
-        byte[] rawContent = zkClient.getData().forPath(getSchemaIdsFilePath());
-
-        ArrayList<Integer> schemaIdList = new ArrayList<Integer>();
-
-        Scanner scanner = new Scanner(new ByteArrayInputStream(rawContent));
-
-        while (scanner.hasNext()) {
-          String line = scanner.nextLine();
-
-          try {
-            Integer id = Integer.parseInt(line);
-            schemaIdList.add(id);
-          } catch (NumberFormatException e) {
-            logger.error("Got an invalid ID ({}) in {} !", line, getSchemaIdsFilePath(), e);
-          }
-        }
+    // schema ids from the mirrored schema id file, in order from oldest to newest
+    private List<Integer> getSchemaIds() {
+      return schemaIds.get().ids;
+    }
 
-        return schemaIdList;
+    /**
+     * Read the schema id file from ZK rather than from the mirror, and update
+     * the mirror with it.
+     */
+    private SchemaIds fetchSchemaIds() {
+      try {
+        Stat stat = new Stat();
+        byte[] rawContent = zkClient.getData().storingStatIn(stat).forPath(getSchemaIdsFilePath());
+        return mirrorSchemaIds(rawContent, stat.getVersion());
       } catch (Exception e) {
         throw new RuntimeException("An exception occurred while accessing ZK!", e);
       }
     }
 
-    private Integer getLatestSchemaId(List<Integer> currentSchemaIds) {
-      // TODO: Make IDs String across the board (not Integer),
-      // TODO: Add pluggable ID generation schemes
-      Integer lastId = -1;
-      for (Integer id : currentSchemaIds) {
-        if (id > lastId) {
-          lastId = id;
+    private void mirrorSchemaIds(ChildData data) {
+      if (data != null) {
+        mirrorSchemaIds(data.getData(), data.getStat().getVersion());
+      }
+    }
+
+    /**
+     * Replace the mirrored schema ids, unless they come from an older version
+     * of the znode than the ones already mirrored (notifications and our own
+     * writes may arrive in any order).
+     */
+    private SchemaIds mirrorSchemaIds(byte[] rawContent, int version) {
+      SchemaIds update = new SchemaIds(parseSchemaIds(rawContent), version);
+      while (true) {
+        SchemaIds current = schemaIds.get();
+        if (current != null && current.version >= version) {
+          return current;
+        }
+        if (schemaIds.compareAndSet(current, update)) {
+          return update;
         }
       }
-      return lastId;
     }
 
-    private Integer getLatestSchemaId() {
-      return getLatestSchemaId(getSchemaIds());
+    private List<Integer> parseSchemaIds(byte[] rawContent) {
+      // TODO: Make IDs String across the board (not Integer),
+      // TODO: Add pluggable ID generation schemes
+      return SchemaIdsCodec.decode(rawContent, getSchemaIdsFilePath());
     }
 
     private String readSchemaForId(String schemaId) {
+      String schema = schemas.get(schemaId);
+      if (schema != null) {
+        return schema;
+      }
       try {
         byte[] rawContent = zkClient.getData().forPath(getSchemaFilePath(schemaId));
         if (rawContent == null || rawContent.length == 0) {
           return null;
         } else {
-          return new String(rawContent);
+          schema = schemaInterner.intern(compressor.decode(rawContent));
+          schemas.put(schemaId, schema);
+          return schema;
         }
       } catch (KeeperException.NoNodeException e) {
         // The schema for this ID does not exist in ZK.
@@ -418,42 +777,92 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
       }
     }
 
-    private final String endOfLine = System.getProperty("line.separator");
-
-    private String serializeSchemaIds(List<Integer> schemaIds) {
-      // TODO: Make IDs String across the board (not Integer),
-      // TODO: Add pluggable ID generation schemes
-      StringBuilder sb = new StringBuilder();
-      boolean firstLine = true;
-      for (Integer id: schemaIds) {
-        if (firstLine) {
-          firstLine = false;
-        } else {
-          sb.append(endOfLine);
+    /**
+     * Read the schemas with the given ids which are missing from the mirror,
+     * issuing all the reads at once in the background rather than one after
+     * the other, so that they cost about one round-trip.
+     */
+    private void prefetchSchemas(List<Integer> schemaIds) {
+      List<String> missing = new ArrayList<String>();
+      for (Integer id : schemaIds) {
+        if (!schemas.containsKey(id.toString())) {
+          missing.add(id.toString());
         }
-        sb.append(id.toString());
       }
-      return sb.toString();
+      if (missing.size() < 2) {
+        return;
+      }
+      final CountDownLatch pending = new CountDownLatch(missing.size());
+      BackgroundCallback callback = new BackgroundCallback() {
+        @Override
+        public void processResult(CuratorFramework client, CuratorEvent event) {
+          byte[] rawContent = event.getData();
+          if (event.getResultCode() == KeeperException.Code.OK.intValue()
+              && rawContent != null && rawContent.length > 0) {
+            schemas.put((String) event.getContext(), schemaInterner.intern(compressor.decode(rawContent)));
+          }
+          pending.countDown();
+        }
+      };
+      try {
+        for (String schemaId : missing) {
+          zkClient.getData().inBackground(callback, schemaId).forPath(getSchemaFilePath(schemaId));
+        }
+        if (!pending.await(batchReadTimeout, TimeUnit.MILLISECONDS)) {
+          logger.warn("Timed out reading the schemas of {} in the background", getName());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (Exception e) {
+        throw new RuntimeException("An exception occurred while accessing ZK!", e);
+      }
+      // whatever failed is read again, and reported, by readSchemaForId
     }
 
-    private synchronized SchemaEntry createNewSchema(String schema) {
+    /**
+     * Create the schema with the next id, provided the schema ids file still is
+     * at the version the given ids were read from.
+     *
+     * @return the new entry, or null if the schema ids file was modified by
+     *         somebody else in the meantime
+     */
+    private SchemaEntry createNewSchema(String schema, SchemaIds currentSchemaIds) {
       try {
         // TODO: Make IDs String across the board (not Integer),
         // TODO: Add pluggable ID generation schemes
-        List<Integer> allSchemaIds = getSchemaIds();
-        Integer newId = getLatestSchemaId(allSchemaIds) + 1;
+        List<Integer> allSchemaIds = new ArrayList<Integer>(currentSchemaIds.ids);
+        Integer newId = currentSchemaIds.latestId + 1;
         allSchemaIds.add(newId);
-        byte[] newSchemaFile = schema.getBytes();
-        byte[] newSchemaIdsFile = serializeSchemaIds(allSchemaIds).getBytes();
-        // Create new schema and update schema IDs file in one ZK transaction
-        zkClient.inTransaction().
-                create().forPath(getSchemaFilePath(newId.toString()), newSchemaFile).
-                and().
-                setData().forPath(getSchemaIdsFilePath(), newSchemaIdsFile).
-                and().commit();
-
-          // TODO: Keep new schema in a local cache
-          return new SchemaEntry(String.valueOf(newId), schema);
+        byte[] newSchemaFile = compressor.encode(schema);
+        byte[] newSchemaIdsFile = SchemaIdsCodec.encode(allSchemaIds);
+        // Create new schema and update schema IDs file in one ZK transaction,
+        // which fails if another registration got there first
+        Collection<CuratorTransactionResult> results;
+        try {
+          results = zkClient.inTransaction().
+                  create().forPath(getSchemaFilePath(newId.toString()), newSchemaFile).
+                  and().
+                  create().forPath(getSchemaHashPath(schema), newId.toString().getBytes(UTF_8)).
+                  and().
+                  setData().withVersion(currentSchemaIds.version).forPath(getSchemaIdsFilePath(), newSchemaIdsFile).
+                  and().commit();
+        } catch (KeeperException.BadVersionException e) {
+          return null;
+        } catch (KeeperException.NodeExistsException e) {
+          return null;
+        }
+
+        // make our own write visible without waiting for the watch
+        schema = schemaInterner.intern(schema);
+        SchemaEntry entry = new SchemaEntry(newId.toString(), schema);
+        schemas.put(entry.getId(), schema);
+        entriesBySchema.putIfAbsent(entry);
+        for (CuratorTransactionResult result : results) {
+          if (result.getType() == OperationType.SET_DATA) {
+            mirrorSchemaIds(newSchemaIdsFile, result.getResultStat().getVersion());
+          }
+        }
+        return entry;
       } catch (Exception e) {
         throw new RuntimeException(
                 "An exception occurred while accessing ZK!", e);
@@ -465,17 +874,7 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
      */
     @Override
     public SubjectConfig getConfig() {
-      try {
-        // TODO: Allow this behavior to be disabled once we have async updating
-        // of the cache via ZK Observers... This would protect ZK from getting
-        // hammered too much at the expense of slightly stale data.
-        Properties props = new Properties();
-        byte[] rawProperties = zkClient.getData().forPath(getConfigFilePath());
-        props.load(new ByteArrayInputStream(rawProperties));
-        return RepositoryUtil.configFromProperties(props);
-      } catch (Exception e) {
-        throw new RuntimeException("An exception occurred while accessing ZK!", e);
-      }
+      return config;
     }
 
     /**
@@ -513,18 +912,61 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
     @Override
     public SchemaEntry register(String schema) throws SchemaValidationException {
       RepositoryUtil.validateSchemaOrSubject(schema);
-      SchemaEntry cachedSchema = null; // TODO: lookup within local cache first
-      if (cachedSchema != null) {
-        return cachedSchema;
-      } else {
-        acquireLock();
-        SchemaEntry entry = lookupBySchema(schema);
-        if (entry == null) {
-          entry = createNewSchema(schema);
-        }
-        releaseLock();
+      SchemaEntry entry = lookupBySchema(schema);
+      if (entry != null) {
         return entry;
       }
+      RepositoryClient leader = getLeader();
+      if (leader != null) {
+        return registerThroughLeader(leader, schema);
+      }
+      // Optimistically start from the mirror: if it is behind, the
+      // versioned write fails and we try again with what is in ZK.
+      SchemaIds current = schemaIds.get();
+      while (true) {
+        entry = createNewSchema(schema, current);
+        if (entry != null) {
+          return entry;
+        }
+        SchemaIds latestInZk = fetchSchemaIds();
+        if (latestInZk.version == current.version) {
+          // the write may have lost to one our ZK server has not seen yet
+          syncWithLeader(getSchemaIdsFilePath());
+          latestInZk = fetchSchemaIds();
+        }
+        if (latestInZk.version == current.version) {
+          throw new RuntimeException("Unable to register schema, schema file "
+                  + getSchemaFilePath(String.valueOf(current.latestId + 1))
+                  + " exists but is not referenced in " + getSchemaIdsFilePath());
+        }
+        current = latestInZk;
+        entry = lookupBySchema(schema);
+        if (entry != null) {
+          return entry;
+        }
+      }
+    }
+
+    @Override
+    protected SchemaEntry forwardRegistration(String schema) throws SchemaValidationException {
+      RepositoryClient leader = getLeader();
+      return leader == null ? null : registerThroughLeader(leader, schema);
+    }
+
+    private SchemaEntry registerThroughLeader(RepositoryClient leader, String schema)
+        throws SchemaValidationException {
+      Subject subjectOnLeader = leader.lookup(getName());
+      if (subjectOnLeader == null) {
+        throw new IllegalStateException("Subject " + getName() + " not found on the leader");
+      }
+      SchemaEntry entry = subjectOnLeader.register(schema);
+      entry = new SchemaEntry(entry.getId(), schemaInterner.intern(entry.getSchema()));
+      // make the write visible here before returning
+      schemas.put(entry.getId(), entry.getSchema());
+      entriesBySchema.putIfAbsent(entry);
+      syncWithLeader(getSchemaIdsFilePath());
+      fetchSchemaIds();
+      return entry;
     }
 
     /**
@@ -550,6 +992,60 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
       }
     }
 
+    /**
+     * @return the mirrored schema ids, read from ZK first if the connection
+     *         was interrupted since they were last known to be current
+     */
+    private SchemaIds getCurrentSchemaIds() {
+      int epoch = connectionEpoch.get();
+      if (mirrorEpoch == epoch) {
+        return schemaIds.get();
+      }
+      SchemaIds current = fetchSchemaIds();
+      mirrorEpoch = epoch;
+      return current;
+    }
+
+    /**
+     * Check the given schema hash against the Bloom filter of the given
+     * mirrored schema ids, adding the schemas mirrored since the last check to
+     * it first. These are read out of the lock of the filter.
+     *
+     * @return false if the schema is not among the mirrored ones, true if it
+     *         may be, or null if some mirrored schema could not be read
+     */
+    private Boolean checkBloomFilter(List<Integer> ids, byte[] hash) {
+      int covered;
+      synchronized (bloomFilter) {
+        covered = bloomFilterCoverage;
+        if (covered >= ids.size()) {
+          return bloomFilter.mightContain(hashPart(hash, 0), hashPart(hash, 1));
+        }
+      }
+      List<Integer> uncovered = ids.subList(covered, ids.size());
+      prefetchSchemas(uncovered);
+      List<byte[]> schemaHashes = new ArrayList<byte[]>(uncovered.size());
+      for (Integer id : uncovered) {
+        String schema = readSchemaForId(id.toString());
+        if (schema == null) {
+          break;
+        }
+        schemaHashes.add(sha256(schema));
+      }
+      synchronized (bloomFilter) {
+        // other lookups may have added some of them meanwhile
+        for (int i = bloomFilterCoverage - covered; i < schemaHashes.size(); i++) {
+          byte[] schemaHash = schemaHashes.get(i);
+          bloomFilter.add(hashPart(schemaHash, 0), hashPart(schemaHash, 1));
+          bloomFilterCoverage++;
+        }
+        if (bloomFilterCoverage < ids.size()) {
+          return null;
+        }
+        return bloomFilter.mightContain(hashPart(hash, 0), hashPart(hash, 1));
+      }
+    }
+
     /**
      * Lookup the {@link org.schemarepo.SchemaEntry} for the given schema. Since the mapping of
      * schema to id is immutable, this result can be cached.
@@ -561,14 +1057,40 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
     @Override
     public SchemaEntry lookupBySchema(String schema) {
       RepositoryUtil.validateSchemaOrSubject(schema);
-      for (Integer id : getSchemaIds()) {
-        String idStr = id.toString();
-        String schemaInFile = readSchemaForId(idStr);
-        if (schema.equals(schemaInFile)) {
-          return new SchemaEntry(idStr, schema);
+      SchemaEntry entry = entriesBySchema.get(schema);
+      if (entry == null) {
+        String id;
+        byte[] hash = sha256(schema);
+        Boolean mightBeRegistered = checkBloomFilter(getCurrentSchemaIds().ids, hash);
+        if (Boolean.FALSE.equals(mightBeRegistered)) {
+          bloomFilterNegatives.incrementAndGet();
+          return null;
+        }
+        try {
+          id = new String(zkClient.getData().forPath(getSchemaHashPath(hash)), UTF_8);
+        } catch (KeeperException.NoNodeException e) {
+          if (mightBeRegistered != null) {
+            bloomFilterFalsePositives.incrementAndGet();
+          }
+          return null;
+        } catch (Exception e) {
+          throw new RuntimeException("An exception occurred while accessing ZK!", e);
+        }
+        String stored = readSchemaForId(id);
+        if (!schema.equals(stored)) {
+          // only a SHA-256 collision could get us there
+          return null;
         }
+        if (Integer.parseInt(id) > schemaIds.get().latestId) {
+          // the watch has not caught up yet: read the ids from ZK rather than
+          // report an entry allEntries() and latest() would not know of
+          fetchSchemaIds();
+        }
+        // referencing the instance shared with the other subjects
+        entry = new SchemaEntry(id, stored);
+        entriesBySchema.putIfAbsent(entry);
       }
-      return null;
+      return entry;
     }
 
     /**
@@ -581,21 +1103,17 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
      */
     @Override
     public SchemaEntry lookupById(String id) {
-      SchemaEntry cachedSchema = null; // TODO: lookup within local cache first
-      if (cachedSchema != null) {
-        return cachedSchema;
-      } else {
-        String schema = readSchemaForId(id);
-        if (schema != null) {
-          return new SchemaEntry(id, schema);
-        }
-        return null;
+      String schema = readSchemaForId(id);
+      if (schema != null) {
+        return new SchemaEntry(id, schema);
       }
+      return null;
     }
 
     /**
-     * Lookup the most recently registered schema for the given subject. This
-     * result is not cacheable, since the latest schema may change.
+     * Lookup the most recently registered schema for the given subject. The
+     * result is held along with the mirrored schema ids, and dropped when the
+     * watch on the schema ids file reports a change.
      *
      * @return The {@link org.schemarepo.SchemaEntry} or null if no schema is registered with
      *         this subject
@@ -604,18 +1122,17 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
     public SchemaEntry latest() {
       // TODO: Make IDs String across the board (not Integer),
       // TODO: Add pluggable ID generation schemes
-      Integer latestId = getLatestSchemaId(); // This part is not cacheable
-      SchemaEntry cachedSchema = null; // TODO: lookup within local cache first
-      if (cachedSchema != null) {
-        return cachedSchema;
-      } else {
-        String latestSchemaLiteral = readSchemaForId(latestId.toString());
-        if (latestSchemaLiteral == null) {
-          return null;
-        } else {
-          return new SchemaEntry(latestId.toString(), latestSchemaLiteral);
+      SchemaIds current = schemaIds.get();
+      SchemaEntry latest = current.latest;
+      if (latest == null && current.latestId >= 0) {
+        String latestId = String.valueOf(current.latestId);
+        String latestSchemaLiteral = readSchemaForId(latestId);
+        if (latestSchemaLiteral != null) {
+          latest = new SchemaEntry(latestId, latestSchemaLiteral);
+          current.latest = latest;
         }
       }
+      return latest;
     }
 
     /**
@@ -623,21 +1140,49 @@ public class ZooKeeperRepository extends AbstractBackendRepository {
      * most recent to oldest. This result is not cacheable, since the
      * {@link org.schemarepo.SchemaEntry} in the subject may grow over time.
      *
+     * The schemas are read as the entries are iterated, a batch at a time, so
+     * that a caller only interested in the latest ones does not read them all.
+     *
      * @return the {@link org.schemarepo.SchemaEntry} objects in this subject, ordered from most
      *         recent to oldest.
      */
     @Override
     public Iterable<SchemaEntry> allEntries() {
-      // TODO: Get known schemas from local cache.
-      // TODO: Only touch ZK for list of schema IDs and unknown schemas within that list
-      List<SchemaEntry> entries = new ArrayList<SchemaEntry>();
-      for (Integer id : getSchemaIds()) {
-        String idStr = id.toString();
-        String schema = readSchemaForId(idStr);
-        entries.add(new SchemaEntry(idStr, schema));
-      }
-      Collections.reverse(entries);
-      return entries;
+      final List<Integer> schemaIds = getSchemaIds();
+      return new Iterable<SchemaEntry>() {
+        @Override
+        public Iterator<SchemaEntry> iterator() {
+          return new Iterator<SchemaEntry>() {
+            private int next = schemaIds.size() - 1;
+            // the oldest position whose schema was prefetched
+            private int prefetched = schemaIds.size();
+
+            @Override
+            public boolean hasNext() {
+              return next >= 0;
+            }
+
+            @Override
+            public SchemaEntry next() {
+              if (next < 0) {
+                throw new NoSuchElementException();
+              }
+              if (next < prefetched) {
+                // only the schemas missing from the mirror are read from ZK
+                prefetched = Math.max(0, next + 1 - PREFETCH_BATCH_SIZE);
+                prefetchSchemas(schemaIds.subList(prefetched, next + 1));
+              }
+              String idStr = schemaIds.get(next--).toString();
+              return new SchemaEntry(idStr, readSchemaForId(idStr));
+            }
+
+            @Override
+            public void remove() {
+              throw new UnsupportedOperationException();
+            }
+          };
+        }
+      };
     }
   }
 }
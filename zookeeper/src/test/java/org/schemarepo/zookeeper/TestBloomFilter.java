@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.zookeeper;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestBloomFilter {
+
+  @Test
+  public void testNoFalseNegatives() {
+    BloomFilter filter = new BloomFilter(16, 0.01);
+    Random random = new Random(42);
+    long[] hashes = new long[2000];
+    for (int i = 0; i < hashes.length; i++) {
+      hashes[i] = random.nextLong();
+      filter.add(hashes[i], hashes[i] * 31 + 7);
+    }
+    for (long hash : hashes) {
+      assertTrue(filter.mightContain(hash, hash * 31 + 7));
+    }
+  }
+
+  @Test
+  public void testFalsePositiveRateStaysLowAsTheFilterGrows() {
+    BloomFilter filter = new BloomFilter(16, 0.01);
+    Random random = new Random(42);
+    for (int i = 0; i < 10000; i++) {
+      filter.add(random.nextLong(), random.nextLong());
+    }
+    int falsePositives = 0;
+    int probes = 100000;
+    for (int i = 0; i < probes; i++) {
+      if (filter.mightContain(random.nextLong(), random.nextLong())) {
+        falsePositives++;
+      }
+    }
+    double observed = (double) falsePositives / probes;
+    assertTrue("observed false positive rate " + observed, observed < 0.03);
+  }
+}
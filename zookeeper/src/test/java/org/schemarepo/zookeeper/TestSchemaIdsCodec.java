@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.schemarepo.zookeeper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestSchemaIdsCodec {
+
+  private static final String PATH = "/subject/schema_ids";
+
+  @Test
+  public void testRoundTrip() {
+    List<Integer> ids = new ArrayList<Integer>();
+    for (int i = 0; i < 1000; i++) {
+      ids.add(i);
+    }
+    // gaps and out of order ids are allowed too
+    ids.addAll(Arrays.asList(5000, 4999, 0, Integer.MAX_VALUE, 7));
+    assertEquals(ids, SchemaIdsCodec.decode(SchemaIdsCodec.encode(ids), PATH));
+  }
+
+  @Test
+  public void testEmpty() {
+    List<Integer> none = Collections.emptyList();
+    assertEquals(none, SchemaIdsCodec.decode(new byte[0], PATH));
+    assertEquals(none, SchemaIdsCodec.decode(SchemaIdsCodec.encode(none), PATH));
+  }
+
+  @Test
+  public void testTextFormatIsDecoded() {
+    assertEquals(Arrays.asList(0, 1, 12), SchemaIdsCodec.decode("0\n1\n12".getBytes(), PATH));
+    assertEquals(Arrays.asList(0, 1), SchemaIdsCodec.decode("0\r\n1\r\n".getBytes(), PATH));
+    // invalid lines are skipped
+    assertEquals(Arrays.asList(0, 2), SchemaIdsCodec.decode("0\nfoo\n\n2".getBytes(), PATH));
+  }
+
+  @Test
+  public void testConsecutiveIdsTakeOneByte() {
+    List<Integer> ids = new ArrayList<Integer>();
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      ids.add(i);
+      text.append(i).append('\n');
+    }
+    byte[] encoded = SchemaIdsCodec.encode(ids);
+    assertTrue(encoded.length < 10010);
+    assertTrue(encoded.length * 4 < text.length());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testTruncatedContentIsDetected() {
+    byte[] encoded = SchemaIdsCodec.encode(Arrays.asList(0, 1, 2));
+    SchemaIdsCodec.decode(Arrays.copyOf(encoded, encoded.length - 1), PATH);
+  }
+}
@@ -18,19 +18,48 @@
 
 package org.schemarepo.zookeeper;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
 import org.apache.curator.retry.RetryNTimes;
 import org.apache.curator.test.TestingCluster;
 import org.junit.After;
 import org.junit.BeforeClass;
+import org.junit.Test;
 import org.schemarepo.AbstractTestPersistentRepository;
+import org.schemarepo.SchemaEntry;
+import org.schemarepo.SchemaValidationException;
+import org.schemarepo.Subject;
+import org.schemarepo.SubjectConfig;
+import org.schemarepo.Validator;
 import org.schemarepo.ValidatorFactory;
 import org.schemarepo.config.Config;
+import org.schemarepo.json.GsonJsonUtil;
+import org.schemarepo.server.RepositoryServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -94,6 +123,305 @@ public class TestZooKeeperRepository extends AbstractTestPersistentRepository<Zo
     return newRepo(REPO_PATH);
   }
 
+  @Test
+  public void testReadsServedFromMirror() throws Exception {
+    Subject sub = repo.register("mirrored", null);
+    sub.register("sc1");
+    sub.register("sc2");
+    assertEquals("sc1", sub.lookupById("0").getSchema());
+    // the schemas are now mirrored, ZK is not needed to read them anymore
+    zkClient.delete().forPath(REPO_PATH + "/mirrored/0.schema");
+    assertEquals("sc1", sub.lookupById("0").getSchema());
+    assertEquals("sc2", sub.latest().getSchema());
+  }
+
+  @Test
+  public void testLatestHeldUntilChanged() throws Exception {
+    Subject sub = repo.register("polled", null);
+    assertNull(sub.latest());
+    sub.register("sc1");
+    SchemaEntry latest = sub.latest();
+    assertEquals("sc1", latest.getSchema());
+    assertSame(latest, sub.latest());
+    // a change of the schema ids file, from anywhere, replaces it
+    zkClient.setData().forPath(REPO_PATH + "/polled/schema_ids", "0".getBytes());
+    long deadline = System.currentTimeMillis() + 10000;
+    while (sub.latest() == latest) {
+      assertTrue("latest not refreshed in time", System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+    assertEquals(latest, sub.latest());
+  }
+
+  @Test
+  public void testMirrorFollowsOtherInstances() throws Exception {
+    Subject sub = repo.register("shared", null);
+    sub.register("sc1");
+    ZooKeeperRepository other = newRepo(REPO_PATH);
+    try {
+      Subject otherSub = other.lookup("shared");
+      assertEquals("sc1", otherSub.latest().getSchema());
+      sub.register("sc2");
+      other.register("another", null);
+      // the other instance learns about the changes through its watches
+      long deadline = System.currentTimeMillis() + 10000;
+      while (!"sc2".equals(otherSub.latest().getSchema())
+          || repo.lookup("another") == null) {
+        assertTrue("mirror not updated in time", System.currentTimeMillis() < deadline);
+        Thread.sleep(10);
+      }
+      int count = 0;
+      for (Subject s : repo.subjects()) {
+        count++;
+      }
+      assertEquals(2, count);
+    } finally {
+      other.close();
+    }
+  }
+
+  @Test
+  public void testConcurrentRegistrationsAcrossInstances() throws Exception {
+    final ZooKeeperRepository other = newRepo(REPO_PATH);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final Subject sub = repo.register("contended", null);
+      final Subject otherSub = other.register("contended", null);
+      List<Future<SchemaEntry>> results = new ArrayList<Future<SchemaEntry>>();
+      for (int i = 0; i < 40; i++) {
+        // every schema is registered twice, once through each instance
+        final String schema = "schema" + (i / 2);
+        final Subject target = i % 2 == 0 ? sub : otherSub;
+        results.add(executor.submit(new Callable<SchemaEntry>() {
+          @Override
+          public SchemaEntry call() throws Exception {
+            return target.register(schema);
+          }
+        }));
+      }
+      Map<String, String> idToSchema = new HashMap<String, String>();
+      for (Future<SchemaEntry> result : results) {
+        SchemaEntry entry = result.get();
+        String previous = idToSchema.put(entry.getId(), entry.getSchema());
+        assertTrue(previous == null || previous.equals(entry.getSchema()));
+      }
+      assertEquals(20, idToSchema.size());
+      int count = 0;
+      for (SchemaEntry entry : other.lookup("contended").allEntries()) {
+        assertEquals(idToSchema.get(entry.getId()), entry.getSchema());
+        count++;
+      }
+      assertEquals(20, count);
+    } finally {
+      executor.shutdown();
+      other.close();
+    }
+  }
+
+  @Test
+  public void testSubjectIndexedByHashOnOpen() throws Exception {
+    // a subject laid out without the hash index
+    String subjectPath = REPO_PATH + "/legacy";
+    zkClient.create().creatingParentsIfNeeded().forPath(subjectPath);
+    zkClient.create().forPath(subjectPath + "/subject.properties");
+    zkClient.create().forPath(subjectPath + "/schema_ids", "0\n1\n2".getBytes());
+    zkClient.create().forPath(subjectPath + "/0.schema", "sc1".getBytes());
+    zkClient.create().forPath(subjectPath + "/1.schema", "sc2".getBytes());
+    zkClient.create().forPath(subjectPath + "/2.schema", "sc1".getBytes());
+
+    Subject sub = repo.lookup("legacy");
+    sync(subjectPath);
+    assertEquals(2, zkClient.getChildren().forPath(subjectPath + "/by-hash").size());
+    assertEquals("0", sub.lookupBySchema("sc1").getId());
+    assertEquals("1", sub.lookupBySchema("sc2").getId());
+    assertNull(sub.lookupBySchema("sc3"));
+    assertEquals("3", sub.register("sc3").getId());
+    ZooKeeperRepository other = newRepo(REPO_PATH);
+    try {
+      assertEquals("3", other.lookup("legacy").lookupBySchema("sc3").getId());
+    } finally {
+      other.close();
+    }
+  }
+
+  @Test
+  public void testUnregisteredSchemasRuledOutByBloomFilter() throws Exception {
+    Subject sub = repo.register("filtered", null);
+    for (int i = 0; i < 100; i++) {
+      sub.register("sc" + i);
+    }
+    ZooKeeperRepository other = newRepo(REPO_PATH);
+    try {
+      Subject otherSub = other.lookup("filtered");
+      for (int i = 100; i < 200; i++) {
+        assertNull(otherSub.lookupBySchema("sc" + i));
+      }
+      assertEquals(100, other.getBloomFilterNegatives() + other.getBloomFilterFalsePositives());
+      assertTrue(other.getBloomFilterFalsePositiveRate() < 0.1);
+      assertEquals("42", otherSub.lookupBySchema("sc42").getId());
+      // schemas registered elsewhere are found once mirrored
+      sub.register("sc100");
+      long deadline = System.currentTimeMillis() + 10000;
+      while (otherSub.lookupBySchema("sc100") == null) {
+        assertTrue("sc100 was not mirrored", System.currentTimeMillis() < deadline);
+        Thread.sleep(50);
+      }
+      assertEquals("100", otherSub.lookupBySchema("sc100").getId());
+    } finally {
+      other.close();
+    }
+  }
+
+  @Test
+  public void testCompressedSchemas() throws Exception {
+    StringBuilder sb = new StringBuilder("{\"type\": \"record\", \"fields\": [");
+    for (int i = 0; i < 100; i++) {
+      sb.append("{\"name\": \"field").append(i).append("\", \"type\": \"string\"},\n");
+    }
+    String plain = sb.append("]}").toString();
+    String compressed = plain.replace("string", "long");
+    repo.register("compressed", null).register(plain);
+    ZooKeeperRepository compressing = new ZooKeeperRepository(testingClusterConnectionString,
+            REPO_PATH,
+            Config.getIntDefault(Config.ZK_CONNECTION_TIMEOUT),
+            Config.getIntDefault(Config.ZK_SESSION_TIMEOUT),
+            Config.getIntDefault(Config.ZK_CURATOR_SLEEP_TIME_BETWEEN_RETRIES),
+            Config.getIntDefault(Config.ZK_CURATOR_NUMBER_OF_RETRIES),
+            false, null, true, null,
+            new ValidatorFactory.Builder().build());
+    try {
+      // uncompressed schemas remain readable
+      Subject sub = compressing.lookup("compressed");
+      assertEquals(plain, sub.lookupById("0").getSchema());
+      assertEquals("1", sub.register(compressed).getId());
+      sync(REPO_PATH + "/compressed");
+      byte[] stored = zkClient.getData().forPath(REPO_PATH + "/compressed/1.schema");
+      assertEquals(0, stored[0]);
+      assertTrue(stored.length * 4 < compressed.length());
+      assertTrue(compressing.getSchemaCompressor().getBytesSaved() > 0);
+    } finally {
+      compressing.close();
+    }
+    // and compressed ones whether compression is enabled or not
+    ZooKeeperRepository other = newRepo(REPO_PATH);
+    try {
+      Subject sub = other.lookup("compressed");
+      assertEquals(compressed, sub.lookupById("1").getSchema());
+      assertEquals("1", sub.lookupBySchema(compressed).getId());
+    } finally {
+      other.close();
+    }
+  }
+
+  @Test
+  public void testSubjectWithManySchemasIsLoaded() throws Exception {
+    Subject sub = repo.register("deep", null);
+    for (int i = 0; i < 100; i++) {
+      sub.register("schema" + i);
+    }
+    ZooKeeperRepository other = newRepo(REPO_PATH);
+    try {
+      int expected = 99;
+      for (SchemaEntry entry : other.lookup("deep").allEntries()) {
+        assertEquals(String.valueOf(expected), entry.getId());
+        assertEquals("schema" + expected, entry.getSchema());
+        expected--;
+      }
+      assertEquals(-1, expected);
+    } finally {
+      other.close();
+    }
+  }
+
+  @Test
+  public void testFollowerForwardsWritesToLeader() throws Exception {
+    String leaderUrl = "http://localhost:8124/schema-repo/";
+    Properties props = new Properties();
+    props.put(Config.REPO_CLASS, ZooKeeperRepository.class.getName());
+    props.put(Config.ZK_ENSEMBLE, testingClusterConnectionString);
+    props.put(Config.ZK_PATH_PREFIX, REPO_PATH);
+    props.put(Config.ZK_LEADER_ELECTION, "true");
+    props.put(Config.ZK_ADVERTISED_URL, leaderUrl);
+    props.put(Config.VALIDATOR_PREFIX + "reject", RejectAll.class.getName());
+    props.put(Config.DEFAULT_SUBJECT_VALIDATORS, "reject");
+    props.put(Config.JETTY_HOST, "localhost");
+    props.put(Config.JETTY_PORT, "8124");
+    props.put(Config.JETTY_GRACEFUL_SHUTDOWN, "100");
+    RepositoryServer leader = new RepositoryServer(props);
+    leader.start();
+    // the first instance to join the election wins it
+    long deadline = System.currentTimeMillis() + 10000;
+    while (zkClient.checkExists().forPath(REPO_PATH + "/.leader") == null
+        || zkClient.getChildren().forPath(REPO_PATH + "/.leader").isEmpty()) {
+      assertTrue("the leader was not elected", System.currentTimeMillis() < deadline);
+      Thread.sleep(50);
+    }
+    ZooKeeperRepository follower = new ZooKeeperRepository(testingClusterConnectionString,
+            REPO_PATH,
+            Config.getIntDefault(Config.ZK_CONNECTION_TIMEOUT),
+            Config.getIntDefault(Config.ZK_SESSION_TIMEOUT),
+            Config.getIntDefault(Config.ZK_CURATOR_SLEEP_TIME_BETWEEN_RETRIES),
+            Config.getIntDefault(Config.ZK_CURATOR_NUMBER_OF_RETRIES),
+            true, "http://localhost:1/unreachable/", new GsonJsonUtil(),
+            new ValidatorFactory.Builder().setValidator("reject", new RejectAll("rejected by the follower"))
+                .setDefaultValidator("reject").build());
+    try {
+      // the forwarded schemas are only validated by the leader
+      Subject sub = follower.register("forwarded", null);
+      try {
+        sub.register("sc1");
+        fail("the registration was not forwarded to the leader");
+      } catch (SchemaValidationException expected) {
+        assertFalse("rejected by the follower".equals(expected.getMessage()));
+      }
+      Subject open = follower.register("open",
+          new SubjectConfig.Builder().setValidators(Collections.<String>emptySet()).build());
+      assertEquals("0", open.register("sc1").getId());
+      // the leader's write is visible to the follower right away
+      assertEquals("sc1", open.latest().getSchema());
+      assertEquals("0", open.lookupBySchema("sc1").getId());
+    } finally {
+      follower.close();
+      leader.stop();
+    }
+  }
+
+  /**
+   * A validator rejecting every schema
+   */
+  public static class RejectAll implements Validator {
+    private final String message;
+
+    public RejectAll() {
+      this("rejected");
+    }
+
+    RejectAll(String message) {
+      this.message = message;
+    }
+
+    @Override
+    public void validate(String schemaToValidate, Iterable<SchemaEntry> schemasInOrder)
+        throws SchemaValidationException {
+      throw new SchemaValidationException(message);
+    }
+  }
+
+  /**
+   * Waits for the server zkClient is connected to to catch up with the writes
+   * of the repositories under test, which may be connected to another one.
+   */
+  private static void sync(String path) throws Exception {
+    final CountDownLatch synced = new CountDownLatch(1);
+    zkClient.sync().inBackground(new BackgroundCallback() {
+      @Override
+      public void processResult(CuratorFramework client, CuratorEvent event) {
+        synced.countDown();
+      }
+    }).forPath(path);
+    assertTrue("zkClient not synced in time", synced.await(10, TimeUnit.SECONDS));
+  }
+
   private ZooKeeperRepository newRepo(String path) {
     return new ZooKeeperRepository(testingClusterConnectionString,
             path,